@@ -14,6 +14,7 @@ public class GTSRunner {
         String sampleOLMCTSController = "controllers.sampleOLMCTS.Agent";
         String sampleGAController = "controllers.sampleGA.Agent";
         String GTSController = "controllers.GeneralTreeSearch.Agent";
+        String GTSMetaController = "controllers.GeneralTreeSearch.MetaAgent";
 
         //Available games:
         String gamesPath = "examples/gridphysics/";
@@ -0,0 +1,413 @@
+// Code written by Wells Lucas Santo
+
+import controllers.GeneralTreeSearch.GTSParams;
+import core.ArcadeMachine;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+// Headless tuner for GTS: searches over TSDL configurations (the GTSParams values and the
+// depth limit) by playing every configuration on a grid of games x levels x seeds.
+//
+//     java GTSTuner tuner.txt
+//
+// Every game runs in its own JVM (so no static game state is shared between games, and
+// a crash only loses that game), as many at once as there are cores. The result of each
+// finished game is appended to the results file straight away, and on start-up the file
+// is read back, so an interrupted run picks up where it stopped.
+//
+// The tuner file uses the same "Key: value" lines as TSDL. Lists are comma separated:
+//     Games: aliens, boulderdash, chase
+//     Levels: 0, 1
+//     Seeds: 11, 22, 33
+//     Search: GRID               (every combination) or EVOLVE (a genetic algorithm)
+//     Depth Limit: 6, 10
+//     Exploration: UCT, FIRST    (any TSDL parameter can be limited to some of its values,
+//                                 by default all of them are tried)
+//     Population: 12             (EVOLVE only)
+//     Generations: 10            (EVOLVE only)
+//     Tuner Seed: 1              (EVOLVE only)
+//     Workers: 8                 (default: one per core)
+//     Results: tuner-results.tsv
+//     Games Path: examples/gridphysics/
+//     Game Timeout: 600          (seconds, a game that takes longer is retried next run)
+public class GTSTuner {
+
+    // The TSDL parameters a configuration is made of, in the order they are written
+    static final String[] KEYS = {"Exploration", "Expansion", "Removal", "Simulation",
+                                  "Evaluation", "Backpropagation", "Selection", "Depth Limit"};
+
+    // The values tried for each of KEYS
+    String[][] values = {names(GTSParams.EXPLORATION.values()), names(GTSParams.EXPANSION.values()),
+                         names(GTSParams.REMOVAL.values()), names(GTSParams.SIMULATION.values()),
+                         names(GTSParams.EVALUATION.values()), names(GTSParams.BACKPROPAGATION.values()),
+                         names(GTSParams.SELECTION.values()), {"6", "10"}};
+
+    String[] games = {};
+    String[] levels = {"0"};
+    String[] seeds = {"0"};
+    String search = "GRID";
+    int population = 12;
+    int generations = 10;
+    long tunerSeed = 1;
+    int threads = Runtime.getRuntime().availableProcessors();
+    String resultsFile = "tuner-results.tsv";
+    String gamesPath = "examples/gridphysics/";
+    long timeout = 600;
+
+    // Finished games, by configuration and cell ("config \t game \t level \t seed")
+    HashMap<String, double[]> results = new HashMap<String, double[]>();
+    PrintWriter resultsOut;
+
+    File workDir = new File("tuner-work");
+
+    public static void main (String[] args) throws Exception {
+        if (args.length == 4 && args[0].equals("--game")) {
+            playGame(args[1], args[2], Integer.parseInt(args[3]));
+            return;
+        }
+        if (args.length != 1) {
+            System.out.println("Usage: java GTSTuner <tuner file>");
+            return;
+        }
+        new GTSTuner(args[0]).run();
+    }
+
+    public GTSTuner (String filename) throws IOException {
+        BufferedReader reader = new BufferedReader(new FileReader(filename));
+        String line = null;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty())
+                continue;
+            String info [] = line.split(": ");
+            int key = Arrays.asList(KEYS).indexOf(info[0]);
+            if (key != -1) {
+                values[key] = list(info[1]);
+                continue;
+            }
+            switch (info[0]) {
+                case "Games":       games = list(info[1]);                     break;
+                case "Levels":      levels = list(info[1]);                    break;
+                case "Seeds":       seeds = list(info[1]);                     break;
+                case "Search":      search = info[1].trim();                   break;
+                case "Population":  population = Integer.parseInt(info[1]);    break;
+                case "Generations": generations = Integer.parseInt(info[1]);   break;
+                case "Tuner Seed":  tunerSeed = Long.parseLong(info[1]);       break;
+                case "Workers":     threads = Integer.parseInt(info[1]);       break;
+                case "Results":     resultsFile = info[1].trim();              break;
+                case "Games Path":  gamesPath = info[1].trim();                break;
+                case "Game Timeout": timeout = Long.parseLong(info[1]);        break;
+                default: break;
+            }
+        }
+        reader.close();
+    }
+
+    void run () throws Exception {
+        loadResults();
+        resultsOut = new PrintWriter(new FileWriter(resultsFile, true), true);
+        workDir.mkdirs();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(threads, 1));
+        try {
+            List<String[]> ranked = search.equals("EVOLVE") ? evolve(pool) : grid(pool);
+            System.out.println("--------------------------------");
+            for (int i = 0; i < Math.min(ranked.size(), 10); i++) {
+                double[] fitness = fitness(ranked.get(i));
+                System.out.println(String.format("%2d. wins %.3f  score %10.2f  %s", i + 1,
+                                                 fitness[0], fitness[1], key(ranked.get(i))));
+            }
+        } finally {
+            pool.shutdownNow();
+            resultsOut.close();
+        }
+    }
+
+    // GRID: every combination of the allowed values
+    List<String[]> grid (ExecutorService pool) throws Exception {
+        List<String[]> configs = new ArrayList<String[]>();
+        int[] index = new int[KEYS.length];
+        while (true) {
+            String[] config = new String[KEYS.length];
+            for (int i = 0; i < KEYS.length; i++)
+                config[i] = values[i][index[i]];
+            configs.add(config);
+            int i = KEYS.length - 1;
+            while (i >= 0 && ++index[i] == values[i].length)
+                index[i--] = 0;
+            if (i < 0)
+                break;
+        }
+        System.out.println(configs.size() + " configurations, " + cells().size() + " games each");
+        evaluate(pool, configs);
+        return rank(configs);
+    }
+
+    // EVOLVE: a generational genetic algorithm. The best half of each generation survives,
+    // and the rest is refilled with children of two tournament winners (uniform crossover,
+    // then one parameter changed at random). With the same Tuner Seed it makes the same
+    // choices again, so a resumed run finds its games in the results file.
+    List<String[]> evolve (ExecutorService pool) throws Exception {
+        Random random = new Random(tunerSeed);
+        List<String[]> generation = new ArrayList<String[]>();
+        while (generation.size() < population) {
+            String[] config = new String[KEYS.length];
+            for (int i = 0; i < KEYS.length; i++)
+                config[i] = values[i][random.nextInt(values[i].length)];
+            generation.add(config);
+        }
+
+        for (int g = 0; g < generations; g++) {
+            evaluate(pool, generation);
+            generation = rank(generation);
+            double[] best = fitness(generation.get(0));
+            System.out.println(String.format("Generation %d: wins %.3f  score %.2f  %s", g,
+                                             best[0], best[1], key(generation.get(0))));
+            if (g == generations - 1)
+                break;
+
+            List<String[]> next = new ArrayList<String[]>(generation.subList(0, (population + 1) / 2));
+            while (next.size() < population) {
+                String[] a = tournament(generation, random);
+                String[] b = tournament(generation, random);
+                String[] child = new String[KEYS.length];
+                for (int i = 0; i < KEYS.length; i++)
+                    child[i] = random.nextBoolean() ? a[i] : b[i];
+                int gene = random.nextInt(KEYS.length);
+                child[gene] = values[gene][random.nextInt(values[gene].length)];
+                next.add(child);
+            }
+            generation = next;
+        }
+        return generation;
+    }
+
+    String[] tournament (List<String[]> ranked, Random random) {
+        // 'ranked' is sorted best first, so the lower index wins
+        int a = random.nextInt(ranked.size());
+        int b = random.nextInt(ranked.size());
+        return ranked.get(Math.min(a, b));
+    }
+
+    // Play every configuration on every cell of the grid that isn't in the results yet
+    void evaluate (ExecutorService pool, List<String[]> configs) throws Exception {
+        List<Future<?>> running = new ArrayList<Future<?>>();
+        for (String[] config : configs) {
+            final String[] c = config;
+            for (final String[] cell : cells()) {
+                if (results.containsKey(key(c) + "\t" + join(cell, "\t")))
+                    continue;
+                running.add(pool.submit(new Callable<Void>() {
+                    public Void call () throws Exception {
+                        runGame(c, cell);
+                        return null;
+                    }
+                }));
+            }
+        }
+        for (Future<?> result : running)
+            result.get();
+    }
+
+    // Every (game, level, seed) combination
+    List<String[]> cells () {
+        List<String[]> cells = new ArrayList<String[]>();
+        for (String game : games)
+            for (String level : levels)
+                for (String seed : seeds)
+                    cells.add(new String[]{game, level, seed});
+        return cells;
+    }
+
+    // Play one game in a new JVM, and record its result
+    void runGame (String[] config, String[] cell) throws Exception {
+        File tsdl = new File(workDir, key(config).replace('/', '_') + ".txt");
+        synchronized (this) {
+            if (!tsdl.exists()) {
+                PrintWriter out = new PrintWriter(new FileWriter(tsdl));
+                for (int i = 0; i < KEYS.length; i++)
+                    out.println(KEYS[i] + ": " + config[i]);
+                out.close();
+            }
+        }
+
+        String game = gamesPath + cell[0] + ".txt";
+        String level = gamesPath + cell[0] + "_lvl" + cell[1] + ".txt";
+        ProcessBuilder builder = new ProcessBuilder(
+            new File(System.getProperty("java.home"), "bin/java").getPath(),
+            "-Dgts.tsdl=" + tsdl.getPath(),
+            "-cp", System.getProperty("java.class.path"),
+            "GTSTuner", "--game", game, level, cell[2]);
+        File log = File.createTempFile("game", ".log", workDir);
+        builder.redirectErrorStream(true);
+        builder.redirectOutput(log);
+        Process process = builder.start();
+        if (!process.waitFor(timeout, TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+            process.waitFor();
+        }
+
+        // The child only prints its result, on a line starting with "GAME" (and errors)
+        String result = null;
+        BufferedReader reader = new BufferedReader(new FileReader(log));
+        String line = null;
+        while ((line = reader.readLine()) != null)
+            if (line.startsWith("GAME "))
+                result = line;
+        reader.close();
+        if (result != null)
+            log.delete();
+
+        if (result == null) {
+            System.out.println("No result for " + key(config) + " on " + join(cell, " ")
+                               + " (see " + log.getPath() + "), will retry next run");
+            return;
+        }
+        String[] parts = result.split(" ");
+        record(key(config) + "\t" + join(cell, "\t"),
+               new double[]{Double.parseDouble(parts[1]), Double.parseDouble(parts[2]), Double.parseDouble(parts[3])});
+    }
+
+    synchronized void record (String cell, double[] result) {
+        results.put(cell, result);
+        resultsOut.println(cell + "\t" + result[0] + "\t" + result[1] + "\t" + result[2]);
+    }
+
+    // Results file: config, game, level, seed, win (1/0), score, ticks; one line per game
+    void loadResults () throws IOException {
+        File file = new File(resultsFile);
+        if (!file.exists())
+            return;
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        String line = null;
+        while ((line = reader.readLine()) != null) {
+            String[] parts = line.split("\t");
+            if (parts.length != 7)
+                continue;
+            results.put(parts[0] + "\t" + parts[1] + "\t" + parts[2] + "\t" + parts[3],
+                        new double[]{Double.parseDouble(parts[4]), Double.parseDouble(parts[5]),
+                                     Double.parseDouble(parts[6])});
+        }
+        reader.close();
+        System.out.println("Resuming with " + results.size() + " finished games from " + resultsFile);
+    }
+
+    // Win rate and mean score of a configuration over the grid
+    double[] fitness (String[] config) {
+        double wins = 0, score = 0;
+        int played = 0;
+        for (String[] cell : cells()) {
+            double[] result = results.get(key(config) + "\t" + join(cell, "\t"));
+            if (result == null)
+                continue;
+            wins += result[0];
+            score += result[1];
+            played++;
+        }
+        if (played == 0)
+            return new double[]{0, -Double.MAX_VALUE};
+        return new double[]{wins / played, score / played};
+    }
+
+    // Sort by win rate, then mean score (best first), without duplicates
+    List<String[]> rank (List<String[]> configs) {
+        HashMap<String, String[]> unique = new HashMap<String, String[]>();
+        for (String[] config : configs)
+            unique.put(key(config), config);
+        List<String[]> ranked = new ArrayList<String[]>(unique.values());
+        final HashMap<String, double[]> fitness = new HashMap<String, double[]>();
+        for (String[] config : ranked)
+            fitness.put(key(config), fitness(config));
+        Collections.sort(ranked, new Comparator<String[]>() {
+            public int compare (String[] a, String[] b) {
+                double[] fa = fitness.get(key(a));
+                double[] fb = fitness.get(key(b));
+                if (fa[0] != fb[0])
+                    return Double.compare(fb[0], fa[0]);
+                if (fa[1] != fb[1])
+                    return Double.compare(fb[1], fa[1]);
+                return key(a).compareTo(key(b));
+            }
+        });
+        // GA populations keep their size even when two members are the same
+        while (ranked.size() < configs.size())
+            ranked.add(ranked.get(ranked.size() % unique.size()));
+        return ranked;
+    }
+
+    // Child JVM: play one game with the GTS agent (its TSDL file is in -Dgts.tsdl), and
+    // print "GAME <win> <score> <ticks>". Everything else the game and the agent print
+    // is dropped, apart from the result line of the game, which is where those come from.
+    static void playGame (String game, String level, int seed) {
+        PrintStream out = System.out;
+        ResultFilter filter = new ResultFilter();
+        System.setOut(new PrintStream(filter, true));
+        ArcadeMachine.runOneGame(game, level, false, "controllers.GeneralTreeSearch.Agent", null, seed);
+        System.out.flush();
+        System.setOut(out);
+
+        // "Result (1->win; 0->lose):1, Score:12.0, timesteps:345"
+        String result = filter.result;
+        if (result == null)
+            return;
+        String[] parts = result.substring(result.indexOf(':') + 1).split(", ");
+        int win = parts[0].trim().equals("1") ? 1 : 0;
+        double score = Double.parseDouble(parts[1].substring(parts[1].indexOf(':') + 1));
+        int ticks = Integer.parseInt(parts[2].substring(parts[2].indexOf(':') + 1).trim());
+        System.out.println("GAME " + win + " " + score + " " + ticks);
+    }
+
+    // Keeps the last "Result" line written to it, and drops everything else
+    static class ResultFilter extends OutputStream {
+        StringBuilder line = new StringBuilder();
+        String result;
+
+        public void write (int b) {
+            if (b == '\n') {
+                if (line.length() > 6 && line.substring(0, 6).equals("Result"))
+                    result = line.toString();
+                line.setLength(0);
+            } else if (line.length() < 256) {
+                line.append((char) b);
+            }
+        }
+    }
+
+    static String key (String[] config) {
+        return join(config, "/");
+    }
+
+    static String join (String[] parts, String separator) {
+        StringBuilder joined = new StringBuilder();
+        for (int i = 0; i < parts.length; i++) {
+            if (i > 0)
+                joined.append(separator);
+            joined.append(parts[i]);
+        }
+        return joined.toString();
+    }
+
+    static String[] list (String value) {
+        String[] parts = value.split(",");
+        for (int i = 0; i < parts.length; i++)
+            parts[i] = parts[i].trim();
+        return parts;
+    }
+
+    static String[] names (Enum<?>[] values) {
+        String[] names = new String[values.length];
+        for (int i = 0; i < values.length; i++)
+            names[i] = values[i].name();
+        return names;
+    }
+}
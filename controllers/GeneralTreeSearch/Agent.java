@@ -18,6 +18,8 @@ public class Agent extends AbstractPlayer {
         // String filename = "TSDLAlgorithms/DFS.txt";
         // String filename = "TSDLAlgorithms/Astar.txt";
         String filename = "TSDLAlgorithms/MCTS.txt";
+        // The file can also be given on the command line (GTSTuner does): -Dgts.tsdl=...
+        filename = System.getProperty("gts.tsdl", filename);
         algo = new GTSAlgo(filename);
     }
 
@@ -27,7 +29,14 @@ public class Agent extends AbstractPlayer {
     }
 
     // Called at each step, will return the action to perform
+    // (with Ponder, the search goes on in the background until the next call)
+    // The game's seed is only known once the constructor has returned, so the search is
+    // seeded from it here, on the first call
     public Types.ACTIONS act (StateObservation stateObs, ElapsedCpuTimer elapsedTimer) {
-        return algo.eval(stateObs, elapsedTimer);
+        algo.seedFrom(getRandomSeed());
+        algo.stopPondering();
+        Types.ACTIONS action = algo.eval(stateObs, elapsedTimer);
+        algo.startPondering();
+        return action;
     }
 }
@@ -6,10 +6,24 @@ import  core.game.StateObservation;
 import  core.player.AbstractPlayer;
 import  ontology.Types;
 import  tools.ElapsedCpuTimer;
+import  tools.Vector2d;
 
 import  java.util.ArrayList;
+import  java.util.ArrayDeque;
+import  java.util.HashMap;
 import  java.io.*;
 import  java.util.Random;
+import  java.util.SplittableRandom;
+import  java.util.concurrent.Callable;
+import  java.util.concurrent.ExecutionException;
+import  java.util.concurrent.ExecutorService;
+import  java.util.concurrent.ForkJoinPool;
+import  java.util.concurrent.Future;
+import  java.util.concurrent.LinkedBlockingQueue;
+import  java.util.concurrent.ThreadFactory;
+import  java.util.concurrent.ThreadPoolExecutor;
+import  java.util.concurrent.TimeUnit;
+import  java.util.concurrent.locks.LockSupport;
 
 // The actual generic tree search
 public class GTSAlgo {
@@ -30,12 +44,108 @@ public class GTSAlgo {
     GTSParams.SELECTION       selection;
     int                       depthLimit;
 
+    // The implementations bound to the parameters above when the TSDL file is read, either
+    // built in or given by class name (see GTSComponent)
+    GTSExplorationPolicy      explorationPolicy;
+    GTSExpansionPolicy        expansionPolicy;
+    GTSSimulationPolicy       simulationPolicy;
+    GTSEvaluator              evaluator;
+    GTSBackpropRule           backpropRule;
+    GTSSelectionRule          selectionRule;
+    boolean                   removeExplored;
+
+    // Parameters given as a class name instead of a GTSParams value
+    HashMap<String, String>   componentClasses = new HashMap<String, String>();
+
+    // Optional parameters (default to off when missing from the TSDL file)
+    GTSParams.REUSE           reuse = GTSParams.REUSE.NO;
+    int                       rootWorkers = 1;
+    GTSParams.MERGE           rootMerge = GTSParams.MERGE.VISITS;
+    int                       treeWorkers = 1;
+    double                    virtualLoss = 1.0;
+    int                       rollouts = 1;
+    GTSParams.AGGREGATE       rolloutAggregate = GTSParams.AGGREGATE.MEAN;
+    int                       arenaNodes = 0;
+    GTSParams.OPENLOOP        openLoop = GTSParams.OPENLOOP.NO;
+    GTSParams.COLLAPSE        collapse = GTSParams.COLLAPSE.NO;
+    String                    heuristic = "SimpleStateHeuristic";
+    int                       rolloutLength = 0;
+    int                       memoryNodes = 0;
+    long                      memoryBytes = 0;
+    GTSParams.PRUNE           prune = GTSParams.PRUNE.VISITS;
+    GTSParams.PONDER          ponder = GTSParams.PONDER.NO;
+    double                    ponderCpu = 0.5;
+    long                      seed;
+    boolean                   seeded;
+    String                    traceFile;
+    GTSParams.METRICS         collectMetrics = GTSParams.METRICS.NO;
+    int                       cacheStates = 0;
+    long                      cacheBytes = 0;
+    GTSParams.EVICTION        cacheEviction = GTSParams.EVICTION.LRU;
+    int                       tableSize = 0;
+    GTSParams.REPLACE         tableReplace = GTSParams.REPLACE.DEPTH;
+    int                       iterationBudget = 0;
+    int                       nodeBudget = 0;
+    int                       beamWidth = 8;
+    int                       levelWorkers = 1;
+    int                       earlyStop = 0;
+    double                    stopConfidence = 0;
+    int                       macroLength = 1;
+
+    // One worker per independent tree (only one unless Root Workers is set). Each has its
+    // own frontier, built once from the Exploration parameter and emptied on every eval()
+    GTSWorker[]               workers;
+
+    // Runs workers 1..N-1 of a Root or Tree Workers search (worker 0 runs on the calling
+    // thread). Its threads end when the agent stops searching (see initWorkers()).
+    ExecutorService           workerPool;
+
+    // Runs the playouts of a leaf-parallel simulation (only when Rollouts is set)
+    ForkJoinPool              rolloutPool;
+
+    // Runs the copy()+advance() calls of a level-parallel BFS (only when Level Workers is set)
+    ForkJoinPool              levelPool;
+
+    // Writes the iterations the workers record to the trace file (only when Trace is set)
+    GTSTrace                  trace;
+
+    // Counters of what the search spends its time on (see GTSMetrics; the per-call ones
+    // only count with Metrics: YES)
+    GTSMetrics                metrics = new GTSMetrics();
+
+    // Level Workers: how many nodes of a layer each level worker expands per batch
+    static final int          LEVEL_BATCH = 16;
+
+    // Ponder: the thread searching the predicted subtree between two eval() calls (or null)
+    Thread                    ponderThread;
+    volatile boolean          pondering;
+    int                       ponderIterations;
+
+    // Ponder: a slice of work between two rests, and how long without an act() means the
+    // game is over (teardown() is final, so the agent is never told)
+    static final double       PONDER_SLICE_MILLIS = 2.0;
+    static final long         PONDER_TIMEOUT_MILLIS = 1000;
+
+    // How long a thread of the worker pool waits for the next eval() before it ends (it is
+    // started again on the next one). Much longer than the time between two act() calls.
+    static final long         WORKER_KEEP_ALIVE_MILLIS = 1000;
+
+    // Macro Length: the macro-action being played, and the hashes of the states it is
+    // expected to reach on each of its remaining ticks (see continueMacro())
+    Types.ACTIONS             macroAction;
+    long[]                    macroHashes;
+    int                       macroTick;
+
     public static double epsilon = 1e-6;
 
     // Constructor: GTS Parameter Initialization
     public GTSAlgo (String filename) {
         initParameters(filename);
+        bindComponents();
         printParameters();
+        initWorkers();
+        if (collectMetrics == GTSParams.METRICS.YES)
+            metrics.register(new File(filename).getName());
     }
 
     // Read TSDL file to initialize parameters
@@ -51,14 +161,44 @@ public class GTSAlgo {
                     // Assumption: There's a colon in each line
                     String info [] = line.split(": ");
                     switch (info[0]) {
-                        case "Exploration":     exploration = GTSParams.EXPLORATION.valueOf(info[1]);     break;
-                        case "Expansion":       expansion   = GTSParams.EXPANSION.valueOf(info[1]);       break;
-                        case "Removal":         removal     = GTSParams.REMOVAL.valueOf(info[1]);         break;
-                        case "Simulation":      simulation  = GTSParams.SIMULATION.valueOf(info[1]);      break;
-                        case "Evaluation":      evaluation  = GTSParams.EVALUATION.valueOf(info[1]);      break;
-                        case "Backpropagation": backprop    = GTSParams.BACKPROPAGATION.valueOf(info[1]); break;
-                        case "Selection":       selection   = GTSParams.SELECTION.valueOf(info[1]);       break;
+                        case "Exploration":     exploration = component(GTSParams.EXPLORATION.class, info);     break;
+                        case "Expansion":       expansion   = component(GTSParams.EXPANSION.class, info);       break;
+                        case "Removal":         removal     = GTSParams.REMOVAL.valueOf(info[1]);               break;
+                        case "Simulation":      simulation  = component(GTSParams.SIMULATION.class, info);      break;
+                        case "Evaluation":      evaluation  = component(GTSParams.EVALUATION.class, info);      break;
+                        case "Backpropagation": backprop    = component(GTSParams.BACKPROPAGATION.class, info); break;
+                        case "Selection":       selection   = component(GTSParams.SELECTION.class, info);       break;
                         case "Depth Limit":     depthLimit  = Integer.parseInt(info[1]);                  break;
+                        case "Tree Reuse":      reuse       = GTSParams.REUSE.valueOf(info[1]);           break;
+                        case "Root Workers":    rootWorkers = Integer.parseInt(info[1]);                  break;
+                        case "Root Merge":      rootMerge   = GTSParams.MERGE.valueOf(info[1]);           break;
+                        case "Tree Workers":    treeWorkers = Integer.parseInt(info[1]);                  break;
+                        case "Virtual Loss":    virtualLoss = Double.parseDouble(info[1]);                break;
+                        case "Rollouts":        rollouts    = Integer.parseInt(info[1]);                  break;
+                        case "Rollout Aggregate": rolloutAggregate = GTSParams.AGGREGATE.valueOf(info[1]); break;
+                        case "Node Arena":      arenaNodes  = Integer.parseInt(info[1]);                  break;
+                        case "Open Loop":       openLoop    = GTSParams.OPENLOOP.valueOf(info[1]);        break;
+                        case "State Cache":     parseCacheBudget(info[1]);                                break;
+                        case "Cache Eviction":  cacheEviction = GTSParams.EVICTION.valueOf(info[1]);      break;
+                        case "Transposition Table":   tableSize    = Integer.parseInt(info[1]);           break;
+                        case "Transposition Replace": tableReplace = GTSParams.REPLACE.valueOf(info[1]);  break;
+                        case "Iteration Budget": iterationBudget = Integer.parseInt(info[1]);             break;
+                        case "Node Budget":     nodeBudget  = Integer.parseInt(info[1]);                  break;
+                        case "Beam Width":      beamWidth   = Integer.parseInt(info[1]);                  break;
+                        case "Level Workers":   levelWorkers = Integer.parseInt(info[1]);                 break;
+                        case "Early Stop":      earlyStop   = Integer.parseInt(info[1]);                  break;
+                        case "Stop Confidence": stopConfidence = Double.parseDouble(info[1]);             break;
+                        case "Macro Length":    macroLength = Integer.parseInt(info[1]);                  break;
+                        case "Collapse Children": collapse  = GTSParams.COLLAPSE.valueOf(info[1]);        break;
+                        case "Heuristic":       heuristic   = info[1].trim();                             break;
+                        case "Rollout Length":  rolloutLength = Integer.parseInt(info[1]);                break;
+                        case "Memory Budget":   parseMemoryBudget(info[1]);                               break;
+                        case "Prune":           prune       = GTSParams.PRUNE.valueOf(info[1]);           break;
+                        case "Ponder":          ponder      = GTSParams.PONDER.valueOf(info[1]);          break;
+                        case "Ponder CPU":      ponderCpu   = Double.parseDouble(info[1]);                break;
+                        case "Seed":            seed        = Long.parseLong(info[1]); seeded = true;     break;
+                        case "Trace":           traceFile   = info[1].trim();                             break;
+                        case "Metrics":         collectMetrics = GTSParams.METRICS.valueOf(info[1]);      break;
                         default: break;
                     }
                 }
@@ -70,19 +210,308 @@ public class GTSAlgo {
         }
     }
 
-    //
+    // A parameter that can be a GTSParams value, or the class name of a component. For a
+    // class name the value stays null and the class is loaded by bindComponents()
+    <E extends Enum<E>> E component (Class<E> type, String[] info) {
+        if (GTSComponent.isClassName(info[1])) {
+            componentClasses.put(info[0], info[1].trim());
+            return null;
+        }
+        return Enum.valueOf(type, info[1]);
+    }
+
+    // Pick the implementation of each part of the search, once, so that explore() calls
+    // straight into it instead of switching on the parameters every iteration
+    void bindComponents () {
+        explorationPolicy = bind("Exploration", GTSExplorationPolicy.class, GTSExplorationPolicy.create(exploration));
+        expansionPolicy   = bind("Expansion", GTSExpansionPolicy.class, GTSExpansionPolicy.create(expansion));
+        simulationPolicy  = bind("Simulation", GTSSimulationPolicy.class, GTSSimulationPolicy.create(simulation));
+        evaluator         = bind("Evaluation", GTSEvaluator.class, GTSEvaluator.create(evaluation));
+        backpropRule      = bind("Backpropagation", GTSBackpropRule.class, GTSBackpropRule.create(backprop));
+        selectionRule     = bind("Selection", GTSSelectionRule.class, GTSSelectionRule.create(selection));
+
+        // Removal: Do we remove the explored node from the frontier?
+        removeExplored = removal == GTSParams.REMOVAL.YES && explorationPolicy.usesFrontier();
+    }
+
+    <T extends GTSComponent> T bind (String key, Class<T> type, T builtIn) {
+        T component = componentClasses.containsKey(key) ? GTSComponent.load(componentClasses.get(key), type) : builtIn;
+        component.bind(this);
+        return component;
+    }
+
+    // The TSDL value of a component parameter, for printing
+    String nameOf (String key, Object value) {
+        return componentClasses.containsKey(key) ? componentClasses.get(key) : String.valueOf(value);
+    }
+
+    // State Cache budget: a number of states ("2000"), or of bytes with a KB/MB/GB suffix ("64MB")
+    void parseCacheBudget (String value) {
+        value = value.trim().toUpperCase();
+        long unit = unitOf(value);
+        if (unit == 0) {
+            cacheStates = Integer.parseInt(value);
+        } else {
+            cacheBytes = Long.parseLong(value.substring(0, value.length() - 2).trim()) * unit;
+        }
+    }
+
+    // Memory Budget: a number of nodes ("50000"), or of bytes with a KB/MB/GB suffix ("256MB")
+    void parseMemoryBudget (String value) {
+        value = value.trim().toUpperCase();
+        long unit = unitOf(value);
+        if (unit == 0) {
+            memoryNodes = Integer.parseInt(value);
+        } else {
+            memoryBytes = Long.parseLong(value.substring(0, value.length() - 2).trim()) * unit;
+        }
+    }
+
+    // The number of bytes in the unit a budget ends with, 0 for none
+    static long unitOf (String value) {
+        if (value.endsWith("KB")) return 1L << 10;
+        if (value.endsWith("MB")) return 1L << 20;
+        if (value.endsWith("GB")) return 1L << 30;
+        return 0;
+    }
+
+    // Create the workers, and the threads for them if the search is parallel
+    void initWorkers () {
+        if (rootWorkers < 1)
+            rootWorkers = 1;
+        if (treeWorkers < 1)
+            treeWorkers = 1;
+
+        // Tree Workers share one UCT tree, so they only make sense with UCT exploration,
+        // and they replace (rather than combine with) Root Workers
+        if (treeWorkers > 1 && exploration != GTSParams.EXPLORATION.UCT) {
+            System.out.println("Tree Workers need UCT exploration, searching on one thread.");
+            treeWorkers = 1;
+        }
+        if (treeWorkers > 1 && rootWorkers > 1) {
+            System.out.println("Tree Workers and Root Workers can't be combined, using Tree Workers.");
+            rootWorkers = 1;
+        }
+
+        // A node arena is emptied at the start of every search, so it can't keep a subtree
+        // for Tree Reuse, and it isn't thread-safe, so it can't back a shared tree
+        if (arenaNodes > 0 && reuse == GTSParams.REUSE.YES) {
+            System.out.println("Node Arena can't be combined with Tree Reuse, using plain nodes.");
+            arenaNodes = 0;
+        }
+        if (arenaNodes > 0 && treeWorkers > 1) {
+            System.out.println("Node Arena can't be combined with Tree Workers, using plain nodes.");
+            arenaNodes = 0;
+        }
+
+        // Open Loop nodes have no states to cache, and the cache isn't thread-safe
+        boolean useCache = cacheStates > 0 || cacheBytes > 0;
+        if (useCache && openLoop == GTSParams.OPENLOOP.YES)
+            useCache = false;
+        if (useCache && treeWorkers > 1) {
+            System.out.println("State Cache can't be combined with Tree Workers, keeping every state.");
+            useCache = false;
+        }
+
+        // Merging transpositions turns the tree into a graph, which a reused subtree
+        // can't be cut out of; the shared tree of Tree Workers never looks them up
+        if (tableSize > 0 && reuse == GTSParams.REUSE.YES) {
+            System.out.println("Transposition Table can't be combined with Tree Reuse, not merging states.");
+            tableSize = 0;
+        }
+        if (tableSize > 0 && treeWorkers > 1) {
+            System.out.println("Transposition Table can't be combined with Tree Workers, not merging states.");
+            tableSize = 0;
+        }
+        // BEAM cuts the children it doesn't keep out of the tree, but not out of the table
+        if (tableSize > 0 && exploration == GTSParams.EXPLORATION.BEAM) {
+            System.out.println("Transposition Table can't be combined with BEAM, not merging states.");
+            tableSize = 0;
+        }
+        // A state is only merged once compared with the one of the node in the table
+        if (tableSize > 0 && openLoop == GTSParams.OPENLOOP.YES) {
+            System.out.println("Transposition Table can't be combined with Open Loop, not merging states.");
+            tableSize = 0;
+        }
+
+        // Open Loop nodes have no states to compare, and the shared tree installs children
+        // with a CAS that doesn't look at their siblings
+        if (collapse == GTSParams.COLLAPSE.YES && openLoop == GTSParams.OPENLOOP.YES) {
+            System.out.println("Collapse Children can't be combined with Open Loop, keeping every child.");
+            collapse = GTSParams.COLLAPSE.NO;
+        }
+        if (collapse == GTSParams.COLLAPSE.YES && treeWorkers > 1) {
+            System.out.println("Collapse Children can't be combined with Tree Workers, keeping every child.");
+            collapse = GTSParams.COLLAPSE.NO;
+        }
+
+        // Expanding a whole layer at once is only the same search as BFS
+        if (levelWorkers > 1 && (exploration != GTSParams.EXPLORATION.FIRST
+                                 || expansion != GTSParams.EXPANSION.ALL
+                                 || removal != GTSParams.REMOVAL.YES)) {
+            System.out.println("Level Workers need BFS (Exploration: FIRST, Expansion: ALL, Removal: YES), "
+                               + "searching on one thread.");
+            levelWorkers = 1;
+        }
+
+        // The shared tree of Tree Workers changes under any one thread's feet
+        if ((earlyStop > 0 || stopConfidence > 0) && treeWorkers > 1) {
+            System.out.println("Early Stop can't be combined with Tree Workers, using the whole budget.");
+            earlyStop = 0;
+            stopConfidence = 0;
+        }
+
+        // Arena nodes are only ever freed all at once, the shared tree of Tree Workers
+        // can't be cut while other threads walk it, and a beam already bounds the tree
+        boolean useMemoryBudget = memoryNodes > 0 || memoryBytes > 0;
+        if (useMemoryBudget && (arenaNodes > 0 || treeWorkers > 1 || exploration == GTSParams.EXPLORATION.BEAM)) {
+            System.out.println("Memory Budget can't be combined with Node Arena, Tree Workers or BEAM, not pruning.");
+            useMemoryBudget = false;
+        }
+
+        // Pondering grows the one tree that the next search will start from, which is
+        // only known with Tree Reuse and a state to search from
+        if (ponder == GTSParams.PONDER.YES
+            && (reuse != GTSParams.REUSE.YES || openLoop == GTSParams.OPENLOOP.YES
+                || Math.max(rootWorkers, treeWorkers) > 1 || levelWorkers > 1
+                || exploration == GTSParams.EXPLORATION.BEAM)) {
+            System.out.println("Ponder needs Tree Reuse, a closed loop, one worker and no BEAM, not pondering.");
+            ponder = GTSParams.PONDER.NO;
+        }
+        if (ponderCpu <= 0)
+            ponder = GTSParams.PONDER.NO;
+
+        // Only a random playout has steps to cut short
+        if (rolloutLength > 0 && simulation != GTSParams.SIMULATION.RANDOM) {
+            System.out.println("Rollout Length needs Simulation: RANDOM, ignoring it.");
+            rolloutLength = 0;
+        }
+
+        // Several playouts per leaf only make sense if the playouts are random
+        if (rollouts < 1 || simulation != GTSParams.SIMULATION.RANDOM)
+            rollouts = 1;
+
+        workers = new GTSWorker[Math.max(rootWorkers, treeWorkers)];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new GTSWorker(explorationPolicy.newFrontier());
+            workers[i].budget = new GTSBudget(iterationBudget, nodeBudget);
+            if (earlyStop > 0 || stopConfidence > 0)
+                workers[i].earlyStop = new GTSEarlyStop(earlyStop, stopConfidence);
+            if (useMemoryBudget)
+                workers[i].memory = new GTSMemoryBudget(memoryNodes, memoryBytes, prune);
+            if (arenaNodes > 0)
+                workers[i].arena = new GTSNodeArena(arenaNodes, Types.ACTIONS.values().length);
+            if (useCache)
+                workers[i].cache = new GTSStateCache(cacheStates, cacheBytes, cacheEviction);
+            if (tableSize > 0)
+                workers[i].transpositions = new GTSTranspositionTable(tableSize, tableReplace);
+            workers[i].rolloutRandoms = new Random[rollouts];
+        }
+        seedWorkers(seeded ? new SplittableRandom(seed) : new SplittableRandom());
+        metrics.enabled = collectMetrics == GTSParams.METRICS.YES;
+        if (traceFile != null) {
+            trace = GTSTrace.open(traceFile);
+            for (int i = 0; i < workers.length; i++)
+                workers[i].trace = trace.newRing();
+        }
+
+        if (rollouts > 1)
+            rolloutPool = new ForkJoinPool(Math.min(rollouts, Runtime.getRuntime().availableProcessors()));
+        if (levelWorkers > 1)
+            levelPool = new ForkJoinPool(Math.min(levelWorkers, Runtime.getRuntime().availableProcessors()));
+
+        if (workers.length > 1) {
+            // Daemon threads, so an idle pool never keeps the JVM alive after the game, and
+            // they end once idle for WORKER_KEEP_ALIVE_MILLIS, so the pool of an agent whose
+            // game is over (teardown() is final, so it is never told) doesn't stay behind
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(workers.length - 1, workers.length - 1,
+                                                             WORKER_KEEP_ALIVE_MILLIS, TimeUnit.MILLISECONDS,
+                                                             new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                public Thread newThread (Runnable task) {
+                    Thread thread = new Thread(task, "GTS-worker");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            pool.allowCoreThreadTimeOut(true);
+            workerPool = pool;
+        }
+    }
+
+    // Every random number of the search comes from one seed: each worker gets its own
+    // stream split from 'streams' (for expansion, simulation and the seeds of the copies
+    // of the state it makes), and each of its rollouts one split from that. The same seed
+    // gives the same search, whatever the number of workers or rollouts.
+    void seedWorkers (SplittableRandom streams) {
+        for (GTSWorker worker : workers) {
+            SplittableRandom stream = streams.split();
+            worker.random = new Random(stream.nextLong());
+            for (int j = 0; j < worker.rolloutRandoms.length; j++)
+                worker.rolloutRandoms[j] = new Random(stream.split().nextLong());
+        }
+    }
+
+    // Seed the search with the seed of the game (see AbstractPlayer.setup()), unless the
+    // TSDL file gave one. Only the first call does anything.
+    public void seedFrom (int gameSeed) {
+        if (seeded || gameSeed == -1)
+            return;
+        seed = gameSeed;
+        seeded = true;
+        seedWorkers(new SplittableRandom(seed));
+    }
 
     // Debugging, to make sure the right attributes were set
     void printParameters () {
         System.out.println("--------------------------------");
-        System.out.println("(1) Exploration     Type: " + exploration);
-        System.out.println("(2) Expansion       Type: " + expansion);
+        System.out.println("(1) Exploration     Type: " + nameOf("Exploration", exploration));
+        System.out.println("(2) Expansion       Type: " + nameOf("Expansion", expansion));
         System.out.println("(3) Removal         Type: " + removal);
-        System.out.println("(4) Simulation      Type: " + simulation);
-        System.out.println("(5) Evaluation      Type: " + evaluation);
-        System.out.println("(6) Backpropagation Type: " + backprop);
-        System.out.println("(7) Selection       Type: " + selection);
+        System.out.println("(4) Simulation      Type: " + nameOf("Simulation", simulation));
+        System.out.println("(5) Evaluation      Type: " + nameOf("Evaluation", evaluation));
+        System.out.println("(6) Backpropagation Type: " + nameOf("Backpropagation", backprop));
+        System.out.println("(7) Selection       Type: " + nameOf("Selection", selection));
         System.out.println("(8) Depth Limit         : " + depthLimit);
+        System.out.println("(9) Tree Reuse          : " + reuse);
+        System.out.println("(10) Root Workers       : " + rootWorkers + " (merge: " + rootMerge + ")");
+        System.out.println("(11) Tree Workers       : " + treeWorkers + " (virtual loss: " + virtualLoss + ")");
+        System.out.println("(12) Rollouts           : " + rollouts + " (aggregate: " + rolloutAggregate + ")");
+        System.out.println("(13) Node Arena         : " + (arenaNodes > 0 ? arenaNodes + " nodes" : "off"));
+        System.out.println("(14) Open Loop          : " + openLoop);
+        System.out.println("(15) State Cache        : " + (cacheBytes > 0 ? cacheBytes + " bytes"
+                                                          : cacheStates > 0 ? cacheStates + " states" : "off")
+                                                       + " (eviction: " + cacheEviction + ")");
+        System.out.println("(16) Transpositions     : " + (tableSize > 0 ? tableSize + " entries" : "off")
+                                                       + " (replace: " + tableReplace + ")");
+        System.out.println("(17) Budget             : " + (iterationBudget > 0 ? iterationBudget + " iterations " : "")
+                                                       + (nodeBudget > 0 ? nodeBudget + " nodes" : "")
+                                                       + (iterationBudget <= 0 && nodeBudget <= 0 ? "time" : ""));
+        if (exploration == GTSParams.EXPLORATION.BEAM)
+            System.out.println("(18) Beam Width         : " + beamWidth);
+        if (levelWorkers > 1)
+            System.out.println("(19) Level Workers      : " + levelWorkers);
+        if (earlyStop > 0 || stopConfidence > 0)
+            System.out.println("(20) Early Stop         : " + (earlyStop > 0 ? earlyStop + " stable iterations " : "")
+                                                           + (stopConfidence > 0 ? "confidence " + stopConfidence : ""));
+        if (macroLength > 1)
+            System.out.println("(21) Macro Length       : " + macroLength + " ticks");
+        if (collapse == GTSParams.COLLAPSE.YES)
+            System.out.println("(22) Collapse Children  : " + collapse);
+        if (evaluation == GTSParams.EVALUATION.HEURISTIC)
+            System.out.println("(23) Heuristic          : " + heuristic);
+        if (rolloutLength > 0)
+            System.out.println("(24) Rollout Length     : " + rolloutLength + " steps");
+        if (memoryNodes > 0 || memoryBytes > 0)
+            System.out.println("(25) Memory Budget      : " + (memoryBytes > 0 ? memoryBytes + " bytes" : memoryNodes + " nodes")
+                                                           + " (prune: " + prune + ")");
+        if (ponder == GTSParams.PONDER.YES)
+            System.out.println("(26) Ponder             : " + ponder + " (cpu: " + ponderCpu + ")");
+        if (seeded)
+            System.out.println("(27) Seed               : " + seed);
+        if (traceFile != null)
+            System.out.println("(28) Trace              : " + traceFile);
+        if (collectMetrics == GTSParams.METRICS.YES)
+            System.out.println("(29) Metrics            : " + collectMetrics);
         System.out.println("--------------------------------");
     }
 
@@ -94,234 +523,581 @@ public class GTSAlgo {
 
     // (1) Initialize the root, run the algorithm, and return the decision
     public Types.ACTIONS eval (StateObservation stateObs, ElapsedCpuTimer elapsedTimer) {
+        // Macro Length: keep playing the last macro-action while the game goes as predicted
+        if (macroLength > 1 && continueMacro(stateObs))
+            return macroAction;
+        Types.ACTIONS action = plan(stateObs, elapsedTimer);
+        if (macroLength > 1)
+            startMacro(stateObs, action);
+        return action;
+    }
+
+    // Ponder: keep searching the subtree predicted for the action just returned, on a
+    // background thread, until the next act() (see stopPondering()). Called by the agent
+    // once eval() returns. The next eval() then starts from that subtree as usual with Tree
+    // Reuse, if the game really got to its state, with the pondering already in it.
+    // The copies it advances while the game runs each have their own key input (see
+    // ForwardModel.getKeyHandler()), so they never touch the real avatar's action.
+    public void startPondering () {
+        final GTSWorker worker = workers[0];
+        if (ponder != GTSParams.PONDER.YES || worker.nextRoot == null)
+            return;
+        stopPondering();
+        pondering = true;
+        ponderIterations = 0;
+        ponderThread = new Thread(new Runnable() {
+            public void run () {
+                ponder(worker, worker.nextRoot);
+            }
+        }, "GTS-ponder");
+        // Daemon, so it never keeps the JVM alive after the game
+        ponderThread.setDaemon(true);
+        ponderThread.start();
+    }
+
+    // Ponder: stop the background search, after the iteration it's in. Called by the agent
+    // first thing in act(), before the worker's tree is touched.
+    public void stopPondering () {
+        if (ponderThread == null)
+            return;
+        pondering = false;
+        // Wake it up if it's resting (not an interrupt, which the rollout pool would throw on)
+        LockSupport.unpark(ponderThread);
+        try {
+            ponderThread.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        ponderThread = null;
+        if (ponderIterations > 0)
+            System.out.println("Pondered " + ponderIterations + " iterations on the predicted subtree");
+    }
+
+    // Ponder: the background search itself. It runs one iteration after another on the
+    // predicted subtree, resting between slices of work so as to use at most ponderCpu of
+    // a core, until it's stopped, the tree is exhausted or no act() came for too long.
+    void ponder (GTSWorker worker, GTSNode root) {
+        if (root.thisState == null && worker.cache == null)
+            return;
+        StateObservation rootState = stateOf(worker, root);
+        if (rootState.isGameOver())
+            return;
+        root.makeRoot();
+        root.thisState = rootState;
+        worker.root = root;
+        refillFrontier(worker.frontier, root);
+        if (worker.cache != null)
+            resetCache(worker.cache, root);
+        if (worker.memory != null)
+            worker.memory.reset(root, worker.cache == null);
+
+        if (worker.trace != null)
+            worker.trace.startSearch();
+
+        ElapsedCpuTimer timeout = new ElapsedCpuTimer(ElapsedCpuTimer.TimerType.WALL_TIME);
+        timeout.setMaxTimeMillis(PONDER_TIMEOUT_MILLIS);
+        long sliceStart = System.nanoTime();
+        while (pondering && timeout.remainingTimeMillis() > 0 && !worker.frontier.isEmpty()) {
+            explore(worker, timeout);
+            ponderIterations++;
+            if (worker.memory != null && worker.memory.isFull())
+                worker.memory.prune(this, worker);
+
+            double worked = (System.nanoTime() - sliceStart) / 1e6;
+            if (ponderCpu < 1 && worked >= PONDER_SLICE_MILLIS) {
+                long rest = (long) (worked * (1 - ponderCpu) / ponderCpu * 1e6);
+                long wakeUp = System.nanoTime() + rest;
+                while (pondering && System.nanoTime() < wakeUp)
+                    LockSupport.parkNanos(wakeUp - System.nanoTime());
+                sliceStart = System.nanoTime();
+            }
+        }
+    }
+
+    // Search from the given state and return the decision
+    Types.ACTIONS plan (StateObservation stateObs, ElapsedCpuTimer elapsedTimer) {
+        evaluator.startSearch(stateObs);
+        if (rollouts > 1 || levelWorkers > 1)
+            elapsedTimer = wallClockDeadline(elapsedTimer);
+        long start = System.nanoTime();
+        Types.ACTIONS action;
+        if (treeWorkers > 1) {
+            action = evalTreeParallel(stateObs, elapsedTimer);
+        } else if (rootWorkers > 1) {
+            action = evalRootParallel(stateObs, elapsedTimer);
+        } else {
+            GTSWorker worker = workers[0];
+            GTSNode root = search(worker, stateObs, elapsedTimer);
+
+            // Once we're out of time, make a decision
+            action = decide(root);
+            rememberSubtree(worker, action);
+        }
+        metrics.decided(workers, System.nanoTime() - start);
+        return action;
+    }
+
+    // Drop the subtrees remembered for Tree Reuse (the next eval() is not about the state
+    // they were predicted for, e.g. because another search played in between)
+    public void forgetTree () {
+        for (GTSWorker worker : workers)
+            worker.nextRoot = null;
+        macroAction = null;
+    }
+
+    // Macro Length: every edge of the tree is its action repeated for macroLength ticks, so
+    // the decision is too. Play it out from a copy of the current state once, to know what
+    // the game should look like on each of the ticks that follow.
+    void startMacro (StateObservation stateObs, Types.ACTIONS action) {
+        macroAction = action;
+        macroHashes = new long[macroLength - 1];
+        macroTick = 0;
+        StateObservation state = stateObs.copy();
+        metrics.copied();
+        state.setNewSeed(workers[0].random.nextInt());
+        for (int i = 0; i < macroHashes.length; i++) {
+            state.advance(action);
+            macroHashes[i] = GTSTranspositionTable.hash(state);
+        }
+        metrics.advanced(macroHashes.length);
+    }
+
+    // Whether to play the next tick of the macro-action: only if there is one left and the
+    // game is where the search expected it to be. Otherwise (e.g. an NPC moved another way)
+    // it's time to replan, and the subtree remembered for Tree Reuse is wrong as well.
+    boolean continueMacro (StateObservation stateObs) {
+        if (macroAction == null)
+            return false;
+        if (macroTick < macroHashes.length && macroHashes[macroTick] == GTSTranspositionTable.hash(stateObs)) {
+            macroTick++;
+            return true;
+        }
+        if (macroTick < macroHashes.length) {
+            System.out.println("Macro-action diverged after " + (macroTick + 1) + " of " + macroLength
+                               + " ticks, replanning.");
+            for (GTSWorker worker : workers)
+                worker.nextRoot = null;
+        }
+        macroAction = null;
+        return false;
+    }
+
+    // Nodes added to the tree(s) by the last eval(), over all the workers
+    public int lastNodes () {
+        int nodes = 0;
+        for (GTSWorker worker : workers)
+            nodes += worker.budget.nodes();
+        return nodes;
+    }
+
+    // Early Stop: how many eval() calls stopped early, and the time they left unused, over
+    // all the workers (an Iteration Budget saves iterations instead, see GTSEarlyStop)
+    public int earlyStops () {
+        int stops = 0;
+        for (GTSWorker worker : workers)
+            if (worker.earlyStop != null)
+                stops += worker.earlyStop.stops;
+        return stops;
+    }
+
+    // Memory Budget: the nodes in the worker trees and their estimated heap use, states
+    // included, as of the end of the last search (so that heaps can be sized per worker)
+    public int treeNodes () {
+        int nodes = 0;
+        for (GTSWorker worker : workers)
+            if (worker.memory != null)
+                nodes += worker.memory.nodes();
+        return nodes;
+    }
+
+    public long treeBytes () {
+        long bytes = 0;
+        for (GTSWorker worker : workers)
+            if (worker.memory != null)
+                bytes += treeBytes(worker);
+        return bytes;
+    }
+
+    // Only the root keeps its state with Open Loop; with a State Cache, the cached ones do
+    long treeBytes (GTSWorker worker) {
+        int states = worker.cache != null ? worker.cache.size() + 1
+                   : openLoop == GTSParams.OPENLOOP.YES ? 1 : worker.memory.nodes();
+        return worker.memory.estimatedBytes(states);
+    }
+
+    public double savedMillis () {
+        double saved = 0;
+        for (GTSWorker worker : workers)
+            if (worker.earlyStop != null)
+                saved += worker.earlyStop.savedMillis;
+        return saved;
+    }
+
+    // Metrics: the counters of every search so far (also published over JMX, see GTSMetrics)
+    public GTSMetrics.Snapshot metrics () {
+        return metrics.snapshot();
+    }
+
+    // The game's timer may measure CPU time of the calling thread. That means nothing on
+    // other threads, and it barely moves while the calling thread waits for them, so any
+    // search that uses other threads runs against a wall-clock timer with the same
+    // amount of time left
+    ElapsedCpuTimer wallClockDeadline (ElapsedCpuTimer elapsedTimer) {
+        if (elapsedTimer.type == ElapsedCpuTimer.TimerType.WALL_TIME)
+            return elapsedTimer;
+        ElapsedCpuTimer deadline = new ElapsedCpuTimer(ElapsedCpuTimer.TimerType.WALL_TIME);
+        deadline.setMaxTimeMillis(elapsedTimer.remainingTimeMillis());
+        return deadline;
+    }
+
+    // Build (or continue) one worker's tree from the given state until time runs out
+    GTSNode search (GTSWorker worker, StateObservation stateObs, ElapsedCpuTimer elapsedTimer) {
         // Initialize the frontier collection
-        ArrayList<GTSNode> states = new ArrayList<GTSNode>();
+        GTSFrontier states = worker.frontier;
 
         // Keep track of the root of the state tree
-        GTSNode root = new GTSNode (stateObs, null);
+        GTSNode root = reuseRoot(worker, stateObs);
 
-        // Add the root to the frontier
-        states.add(root);
+        if (root != null) {
+            // Tree Reuse: the subtree below the action we took last time is still valid,
+            // so its frontier nodes go back into the (emptied) frontier
+            refillFrontier(states, root);
+        } else {
+            states.clear();
+            // Node Arena: the old tree is gone, so the whole arena is free again
+            if (worker.arena != null)
+                worker.arena.reset();
+            root = worker.newNode(stateObs, null, -1, stateObs.getAvailableActions().size());
+
+            // Add the root to the frontier
+            states.add(root);
+        }
+        worker.root = root;
+        if (worker.cache != null)
+            resetCache(worker.cache, root);
+        if (worker.transpositions != null) {
+            worker.transpositions.clear();
+            worker.transpositions.put(GTSTranspositionTable.hash(stateObs), root);
+        }
+        if (worker.memory != null)
+            worker.memory.reset(root, openLoop == GTSParams.OPENLOOP.NO && worker.cache == null);
 
         // While there's still time, explore the tree using GTS
-        while (elapsedTimer.remainingTimeMillis() > 3.0) {
+        GTSBudget budget = worker.budget;
+        budget.reset();
+        worker.collapsed = 0;
+        if (worker.trace != null)
+            worker.trace.startSearch();
+        if (worker.earlyStop != null)
+            worker.earlyStop.reset();
+        while (budget.hasIteration(elapsedTimer)) {
             // Check if there are still states to explore
-            if (states.size() == 0) {
+            if (states.isEmpty()) {
                 System.out.println("No more states (we've evaluated all"
                                    + "possibilities in our decision space).");
                 break;
+            } else if (levelWorkers > 1) {
+                budget.startIteration();
+                budget.endIterations(exploreLevel(worker, elapsedTimer));
             } else {
-                explore(states, elapsedTimer);
+                budget.startIteration();
+                explore(worker, elapsedTimer);
+                budget.endIteration();
+            }
+
+            // Memory Budget: make room by cutting subtrees
+            if (worker.memory != null && worker.memory.isFull())
+                worker.memory.prune(this, worker);
+
+            // Early Stop: more iterations won't change the decision
+            if (worker.earlyStop != null && worker.earlyStop.check(this, root)) {
+                worker.earlyStop.stopped(budget, elapsedTimer);
+                System.out.println(worker.earlyStop.statistics(budget));
+                break;
             }
         }
+        String statistics = states.statistics();
+        if (statistics != null)
+            System.out.println(statistics);
+        if (worker.memory != null)
+            System.out.println("Tree memory: " + worker.memory.nodes() + " nodes, ~"
+                               + treeBytes(worker) / 1024 + " KB (pruned " + worker.memory.pruned() + " nodes)");
+        if (collapse == GTSParams.COLLAPSE.YES)
+            System.out.println("Collapsed " + worker.collapsed + " of " + (worker.collapsed + budget.nodes())
+                               + " children into a sibling");
+        if (worker.transpositions != null)
+            System.out.println("Transposition table: " + worker.transpositions.hits() + " states merged into a node already in the tree");
+        return root;
+    }
 
-        // Once we're out of time, make a decision
-        return decide(root);
+    // State Cache: start a new search. A reused subtree keeps the states of its shallowest
+    // nodes, as many as the budget allows, and drops the rest.
+    void resetCache (GTSStateCache cache, GTSNode root) {
+        cache.reset(root);
+        ArrayDeque<GTSNode> open = new ArrayDeque<GTSNode>();
+        for (int i = 0; i < root.numChildren(); i++)
+            if (root.ownsChild(i))
+                open.add(root.getChild(i));
+        while (!open.isEmpty()) {
+            GTSNode node = open.poll();
+            if (node.thisState != null) {
+                if (cache.size() < cache.capacity())
+                    cache.admit(node);
+                else
+                    node.thisState = null;
+            }
+            for (int i = 0; i < node.numChildren(); i++)
+                if (node.ownsChild(i))
+                    open.add(node.getChild(i));
+        }
     }
 
-    // (2) Explore/expand/simulate/evaluate/backprop the tree
+    // Tree Reuse: remember the subtree of the chosen action for the next call
+    void rememberSubtree (GTSWorker worker, Types.ACTIONS action) {
+        if (reuse == GTSParams.REUSE.YES) {
+            GTSNode root = worker.root;
+            int actionIndex = root.thisState.getAvailableActions().indexOf(action);
+            worker.nextRoot = actionIndex == -1 ? null : root.getChild(actionIndex);
+        }
+    }
 
-    // What to do if the current node is a isGameOver() state? (checks on expand, not explore)
-    void explore (ArrayList<GTSNode> states, ElapsedCpuTimer elapsedTimer) {
+    // Root Workers: grow one independent tree per worker, each from its own copy of the
+    // state (with its own random seed), all against the same deadline, then merge the
+    // statistics of the root children and decide on the merged root
+    Types.ACTIONS evalRootParallel (StateObservation stateObs, ElapsedCpuTimer elapsedTimer) {
+        // All workers share one wall-clock deadline
+        final ElapsedCpuTimer deadline = wallClockDeadline(elapsedTimer);
 
-        ///////////////////////////////////////////////////////////////////////////////////////////
-        // 1. Exploration: Get the node that we will expand from (which node's children do we
-        //                 add to the frontier?)
-        ///////////////////////////////////////////////////////////////////////////////////////////
+        ArrayList<Future<GTSNode>> results = new ArrayList<Future<GTSNode>>();
+        for (int i = 1; i < workers.length; i++) {
+            final GTSWorker worker = workers[i];
+            final StateObservation workerState = workerCopy(worker, stateObs);
+            results.add(workerPool.submit(new Callable<GTSNode>() {
+                public GTSNode call () {
+                    return search(worker, workerState, deadline);
+                }
+            }));
+        }
 
-        // Keep track of the selected node and its index in the frontier
-        GTSNode currentNode = null;
-        int nodeIndex = -1;
-        switch (exploration) {
-            // First: Select the node at the front of the ArrayList
-            // This mimics the behavior of a FIFO queue (for BFS)
-            case FIRST:
-                nodeIndex   = 0;
-                currentNode = states.get(nodeIndex);
-                break;
+        GTSNode[] roots = new GTSNode[workers.length];
+        roots[0] = search(workers[0], workerCopy(workers[0], stateObs), deadline);
+        try {
+            for (int i = 1; i < workers.length; i++)
+                roots[i] = results.get(i - 1).get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        } catch (ExecutionException ex) {
+            throw new RuntimeException(ex.getCause());
+        }
 
-            // Last: Select the node at the end of the ArrayList
-            // This mimics the behavior of a LIFO stack (for DFS)
-            case LAST:
-                nodeIndex   = states.size() - 1;
-                currentNode = states.get(nodeIndex);
-                break;
+        Types.ACTIONS action = rootMerge == GTSParams.MERGE.VOTE ? vote(roots, stateObs)
+                                                                  : decide(mergeRoots(roots, stateObs));
+        for (GTSWorker worker : workers)
+            rememberSubtree(worker, action);
+        return action;
+    }
 
-            // High: Select the node that has the highest reward in the ArrayList
-            // This takes O(n) time to traverse the ArrayList to make a decision!
-            //*/ Will this actually work? Only if there's independent meaning to nodes
-            //*/ with high reward -- if the branch shares the reward of a leaf, then
-            //*/ this will always just pick the leaf
-            //**// Need to initialize leaves with values!
-            case HIGH:
-                int highIndex = 0;
-                double highReward = states.get(highIndex).getReward();
-                for (int i = 0; i < states.size(); i++) {
-                    if (states.get(i).getReward() > highReward) {
-                        highIndex = i;
-                        highReward = states.get(i).getReward();
-                    }
-                }
-                nodeIndex   = highIndex;
-                currentNode = states.get(nodeIndex);
-                break;
+    // Tree Workers: all workers grow the same UCT tree until the (shared) deadline, on the
+    // same pool as Root Workers
+    Types.ACTIONS evalTreeParallel (StateObservation stateObs, ElapsedCpuTimer elapsedTimer) {
+        final ElapsedCpuTimer deadline = wallClockDeadline(elapsedTimer);
 
-            // Low: Select the node that has the lowest reward in the ArrayList
-            // This takes O(n) time to traverse the ArrayList to make a decision
-            // Think about this one: won't low reward just pick the most recently added
-            // node in the tree, since it's initialized to a reward of 0?
-            //**// Need to initialize leaves with values!
-            case LOW:
-                int lowIndex = 0;
-                double lowReward = states.get(lowIndex).getReward();
-                for (int i = 0; i < states.size(); i++) {
-                    if (states.get(i).getReward() < lowReward) {
-                        lowIndex = i;
-                        lowReward = states.get(i).getReward();
-                    }
-                }
-                nodeIndex   = lowIndex;
-                currentNode = states.get(nodeIndex);
-                break;
+        // The tree (and the subtree kept for Tree Reuse) belongs to worker 0
+        GTSWorker first = workers[0];
+        GTSNode reused = reuseRoot(first, stateObs);
+        final GTSNode root = reused != null ? reused : new GTSNode(stateObs, null);
+        first.frontier.clear();
+        first.frontier.add(root);
+        first.root = root;
 
-            // UCT: Will pick the deepest unexpanded node in the tree based on UCT
-            case UCT:
-                // Start traversal at the root node
-                currentNode = states.get(0);
-                boolean hasAllChildren = true;
-                // In the situation where this node still has unexplored children,
-                // we will select this node to expand
-                for (int i = 0; i < currentNode.children.length; i++) {
-                    if (currentNode.children[i] == null) {
-                        hasAllChildren = false;
-                        break;
-                    }
+        ArrayList<Future<?>> results = new ArrayList<Future<?>>();
+        for (int i = 1; i < workers.length; i++) {
+            final GTSWorker worker = workers[i];
+            results.add(workerPool.submit(new Runnable() {
+                public void run () {
+                    exploreSharedLoop(worker, root, deadline);
                 }
-                // In the situation where all of the children have been explored
-                // Use UCT to go down the tree until we get to a node without all children explored
-                while (hasAllChildren && currentNode.children.length != 0) {
-                    // Find the best child to select from
-                    // this is the "uct" function in the SampleMCTS SingleTreeNode
-                    int bestIndex = 0;
-                    double bestValue = -Double.MAX_VALUE;
-                    int totalVisits = currentNode.visitCount;
-
-                    for (int i = 0; i < currentNode.children.length; i++) {
-                        GTSNode child = currentNode.children[i];
-
-                        double reward = child.getReward();
-                        int childVisits = child.visitCount;
-                        // The below is based on the UCT equation!
-                        double weight = Math.sqrt(2);
-                        double thisValue = (reward) / (childVisits + this.epsilon) +
-                                           weight * Math.sqrt(Math.log(totalVisits + 1)/(childVisits + this.epsilon));
-                        if (thisValue > bestValue) {
-                            bestValue = thisValue;
-                            bestIndex = i;
-                        }
-                    }
+            }));
+        }
 
-                    // Update currentNode to best child node
-                    currentNode = currentNode.children[bestIndex];
-                    // System.out.println("Updated currentNode to depth " + currentNode.getDepth());
-
-                    // Perhaps instead of having a loop we should have something
-                    // that flags whether all children have been explored or not
-                    // in the actual Node class
-
-                    // If the node we've selected by UCT has unexplored children, we break out of this
-                    // and move on, to the expansion phase
-                    for (int i = 0; i < currentNode.children.length; i++) {
-                        if (currentNode.children[i] == null) {
-                            hasAllChildren = false;
-                            break;
-                        }
-                    }
+        exploreSharedLoop(first, root, deadline);
+        try {
+            for (Future<?> result : results)
+                result.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        } catch (ExecutionException ex) {
+            throw new RuntimeException(ex.getCause());
+        }
+
+        Types.ACTIONS action = decide(root);
+        rememberSubtree(first, action);
+        return action;
+    }
+
+    // Every worker searches its own copy of the state, with its own random seed
+    StateObservation workerCopy (GTSWorker worker, StateObservation stateObs) {
+        StateObservation copy = stateObs.copy();
+        metrics.copied();
+        copy.setNewSeed(worker.random.nextInt());
+        return copy;
+    }
+
+    // Merge the root children of all the workers' trees into a single root:
+    // visits are summed, and rewards are combined the same way Backpropagation combines
+    // them (summed for INCREMENT, max for HIGH, min for LOW). With the MAX merge rule each
+    // child instead keeps the highest reward that any worker found for it.
+    GTSNode mergeRoots (GTSNode[] roots, StateObservation stateObs) {
+        GTSNode merged = new GTSNode(stateObs, null);
+        for (int i = 0; i < merged.numChildren(); i++) {
+            for (GTSNode root : roots) {
+                if (i >= root.numChildren() || root.getChild(i) == null)
+                    continue;
+                GTSNode child = root.getChild(i);
+                GTSNode into = merged.getChild(i);
+                if (into == null) {
+                    into = new GTSNode(child.thisState, merged, i, child.numChildren());
+                    into.setReward(child.getReward());
+                    into.incrementVisitCount(child.getVisitCount());
+                    merged.setChild(i, into);
+                    continue;
                 }
-                break;
+                if (child.getVisitCount() == 0)
+                    continue;
+                if (rootMerge == GTSParams.MERGE.MAX) {
+                    into.setRewardMax(child.getReward());
+                } else {
+                    backpropRule.update(into, child.getReward());
+                }
+                into.incrementVisitCount(child.getVisitCount());
+            }
+        }
+        return merged;
+    }
 
-            // Default: Select first node from frontier
-            default:
-                nodeIndex   = 0;
-                currentNode = states.get(nodeIndex);
-                break;
+    // VOTE merge rule: every worker decides on its own tree, and the action with the most
+    // votes wins. Ties go to the action with the most visits across all trees.
+    Types.ACTIONS vote (GTSNode[] roots, StateObservation stateObs) {
+        ArrayList<Types.ACTIONS> actions = stateObs.getAvailableActions();
+        int[] votes = new int[actions.size()];
+        for (GTSNode root : roots) {
+            int index = actions.indexOf(decide(root));
+            if (index != -1)
+                votes[index]++;
+        }
+
+        GTSNode merged = mergeRoots(roots, stateObs);
+        int best = 0;
+        for (int i = 1; i < votes.length; i++) {
+            int bestVisits = merged.getChild(best) == null ? 0 : merged.getChild(best).getVisitCount();
+            int visits = merged.getChild(i) == null ? 0 : merged.getChild(i).getVisitCount();
+            if (votes[i] > votes[best] || (votes[i] == votes[best] && visits > bestVisits))
+                best = i;
+        }
+        return actions.get(best);
+    }
 
+    // Tree Reuse: return the subtree that was predicted for this observation, promoted
+    // to be the new root, or null if there is none or the game went somewhere else
+    GTSNode reuseRoot (GTSWorker worker, StateObservation stateObs) {
+        GTSNode candidate = worker.nextRoot;
+        worker.nextRoot = null;
+        if (reuse != GTSParams.REUSE.YES || candidate == null)
+            return null;
+
+        if (openLoop == GTSParams.OPENLOOP.YES) {
+            // Open Loop trees only hold statistics about action sequences, which stay
+            // meaningful whatever state the game ended up in
+            candidate.thisState = stateObs;
+        } else if (!stateObs.equiv(stateOf(worker, candidate))) {
+            // The prediction only holds if the real game ended up in exactly that state
+            // (this fails in stochastic games, or when an NPC did something else)
+            return null;
         }
 
+        candidate.makeRoot();
+        return candidate;
+    }
+
+    // Tree Reuse: rebuild the frontier from the nodes of the reused subtree that were
+    // still waiting in it, plus the leaves that were cut off by the depth limit last
+    // time (the subtree moved up one level, so they can now be expanded). They are
+    // re-added in level order, which keeps BFS order for FIRST and puts the deepest
+    // nodes on top of the stack for LAST
+    void refillFrontier (GTSFrontier states, GTSNode root) {
+        ArrayList<GTSNode> waiting = new ArrayList<GTSNode>();
+        ArrayDeque<GTSNode> open = new ArrayDeque<GTSNode>();
+        open.add(root);
+        while (!open.isEmpty()) {
+            GTSNode node = open.poll();
+            boolean isLeaf = true;
+            for (int i = 0; i < node.numChildren(); i++) {
+                GTSNode child = node.getChild(i);
+                if (child != null) {
+                    if (node.ownsChild(i))
+                        open.add(child);
+                    isLeaf = false;
+                }
+            }
+            if (GTSFrontier.contains(node) ||
+                (isLeaf && node.getDepth() < depthLimit &&
+                 (node.thisState == null || !node.thisState.isGameOver())))
+                waiting.add(node);
+        }
+
+        states.clear();
+        // UCT only ever starts from the root
+        if (exploration == GTSParams.EXPLORATION.UCT) {
+            states.add(root);
+            return;
+        }
+        for (GTSNode node : waiting)
+            states.add(node);
+    }
+
+    // (2) Explore/expand/simulate/evaluate/backprop the tree
+
+    // What to do if the current node is a isGameOver() state? (checks on expand, not explore)
+    void explore (GTSWorker worker, ElapsedCpuTimer elapsedTimer) {
+        GTSFrontier states = worker.frontier;
+
+        ///////////////////////////////////////////////////////////////////////////////////////////
+        // 1. Exploration: Get the node that we will expand from (which node's children do we
+        //                 add to the frontier?)
+        ///////////////////////////////////////////////////////////////////////////////////////////
+
+        // Keep track of the selected node (see GTSExplorationPolicy)
+        long time = metrics.now();
+        GTSNode currentNode = explorationPolicy.select(worker);
+        int selectedDepth = currentNode.getDepth();
+        int nodesBefore = worker.budget.nodes();
+        long advancesBefore = worker.trace != null ? worker.budget.advances() : 0;
+        time = metrics.phase(GTSMetrics.EXPLORATION, time);
+
         ///////////////////////////////////////////////////////////////////////////////////////////
         // 2. Removal: Do we remove the explored node from the frontier?
         ///////////////////////////////////////////////////////////////////////////////////////////
 
-        // Next, check removal parameter to see whether we remove or not
-        if (nodeIndex != -1) {
-            switch (removal) {
-                case YES: states.remove(nodeIndex); break;
-                case NO: default: break;
-            }
-        }
+        if (removeExplored)
+            states.remove(currentNode);
+        time = metrics.phase(GTSMetrics.REMOVAL, time);
 
         ///////////////////////////////////////////////////////////////////////////////////////////
-        // 3. Node Expansion: All, First
+        // 3. Node Expansion: All, First, Random (see GTSExpansionPolicy)
         ///////////////////////////////////////////////////////////////////////////////////////////
 
-        // If the node is a valid game state within the depth limit, do expansion
-        if (currentNode.getDepth() < depthLimit && !currentNode.thisState.isGameOver()) {
-            switch (expansion) {
-                // All: Add all of the children of this node to the frontier
-                // This is the behavior you want in DFS/BFS/A*
-                default: case ALL:
-                    for (int i = 0; i < currentNode.children.length; i++) {
-                        StateObservation nextState = currentNode.thisState.copy();
-                        nextState.advance(currentNode.thisState.getAvailableActions().get(i));
-                        currentNode.children[i] = new GTSNode(nextState, currentNode);
-                        states.add(currentNode.children[i]);
-                    }
-                    break;
-
-                // First: Add only the first unexplored child to the frontier
-                case FIRST:
-                    int expandIndex = -1;
-                    for (int i = 0; i < currentNode.children.length; i++) {
-                        if (currentNode.children[i] == null) {
-                            expandIndex = i;
-                            break;
-                        }
-                    }
-                    // If there's actually an explored node, explore it
-                    if (expandIndex != -1) {
-                        StateObservation nextState = currentNode.thisState.copy();
-                        nextState.advance(currentNode.thisState.getAvailableActions().get(expandIndex));
-                        currentNode.children[expandIndex] = new GTSNode(nextState, currentNode);
-                        states.add(currentNode.children[expandIndex]);
-                        currentNode = currentNode.children[expandIndex];
-                    }
-                    break;
-
-                // Random: Add a random child to the frontier
-                case RANDOM:
-                    // Do the random selection based on how SampleMCTS expand does it
-                    Random rnd = new Random();
-                    int bestAction = 0;
-                    double bestValue = -1;
-                    // Go through the unexplored children and randomly assign values to each
-                    // The one who receives the highest value (randomly) is the one we expand
-                    for (int i = 0; i < currentNode.children.length; i++) {
-                        double randomValue = rnd.nextDouble();
-                        if (randomValue > bestValue && currentNode.children[i] == null) {
-                            bestAction = i;
-                            bestValue = randomValue;
-                        }
-                    }
-                    // Here, we've selected a random child node to create/add to the frontier
-                    StateObservation nextState = currentNode.thisState.copy();
-                    nextState.advance(currentNode.thisState.getAvailableActions().get(bestAction));
-                    currentNode.children[bestAction] = new GTSNode(nextState, currentNode);
-                    states.add(currentNode.children[bestAction]);
-                    currentNode = currentNode.children[bestAction];
-                    break;
-            }
+        // The game state at the selected node (rebuilt from the root in Open Loop mode)
+        StateObservation currentState = stateOf(worker, currentNode);
 
+        // If the node is a valid game state within the depth limit, do expansion
+        if (currentNode.getDepth() < depthLimit && !currentState.isGameOver()) {
+            currentNode = expansionPolicy.expand(worker, currentNode, currentState);
+            currentState = worker.leafState;
         }
+        metrics.phase(GTSMetrics.EXPANSION, time);
+        metrics.reached(currentNode.getDepth());
 
         ///////////////////////////////////////////////////////////////////////////////////
         // 4. Simulation: Random Playout, None
@@ -329,160 +1105,508 @@ public class GTSAlgo {
 
         // Also known as the "rollOut" phase for MCTS
 
-        // Keep track of the final state to be evaluated
-        StateObservation finalState = currentNode.thisState.copy();
-
-        // Random Playout: Advance randomly from 'currentNode' to an end state
-        // Only used by MCTS to bring currentNode to a terminal state
-        // These simulated nodes are *not* added to the ArrayList
-        switch (simulation) {
-            case RANDOM: default:
-                int finalDepth = currentNode.getDepth();
-                Random random = new Random();
-                while (finalDepth < depthLimit &&
-                       elapsedTimer.remainingTimeMillis() > 5.0 &&
-                       !finalState.isGameOver()) {
-                    int actionNo = random.nextInt(finalState.getAvailableActions().size());
-                    finalState.advance(finalState.getAvailableActions().get(actionNo));
-                    finalDepth++;
-                }
-                // System.out.println("Simulation to depth: " + finalDepth);
-                break;
-            case NONE:
-                break;
-        }
-
         ///////////////////////////////////////////////////////////////////////////////////////
         // 5. Evaluation: Points, Win (Heuristics)
         ///////////////////////////////////////////////////////////////////////////////////////
 
-        // A debugging message to tell what the depth of the node selected for evaluation is
-        System.out.println("Node Depth: " + currentNode.getDepth());
-
-        // Do evaluation *only* if this node is a game over state, or past the depth limit
-        //*/ Is this really what I want?
-        if (currentNode.getDepth() >= depthLimit || finalState.isGameOver()) {
-            double reward = 0;
-            switch (evaluation) {
-                // Points: Reward is just the score
-                case POINTS:
-                    reward = finalState.getGameScore();
-                    break;
-
-                // Win: Add 1 to the reward if this node is a winning state
-                case WIN:
-                    if (finalState.isGameOver() &&
-                        finalState.getGameWinner() == Types.WINNER.PLAYER_WINS)
-                        reward = 1;
-                    break;
-
-                // WinLossPoints: Winning state is large reward, losing state is negative, and points
-                case WINLOSSPOINTS:
-                    boolean gameOver = finalState.isGameOver();
-                    Types.WINNER outcome = finalState.getGameWinner();
-                    reward = finalState.getGameScore();
-                    if (gameOver && outcome == Types.WINNER.PLAYER_LOSES)
-                        reward += -10000000.0;
-
-                    if (gameOver && outcome == Types.WINNER.PLAYER_WINS)
-                        reward +=  10000000.0;
-                    break;
-
-                // Default: Points
-                default:
-                    reward = finalState.getGameScore();
-                    break;
+        // Keep track of the reward of the final state, NaN if it is not evaluated
+        // (with Rollouts: K, several playouts are run at once and their rewards aggregated)
+        // playout() times the Simulation and Evaluation phases itself
+        double reward = rollouts > 1 ? playoutBatch(worker, currentNode, currentState, elapsedTimer)
+                                     : playout(worker.budget, worker.random, currentNode, currentState, elapsedTimer);
 
-            }
+        // Trace: what this iteration did
+        if (worker.trace != null)
+            worker.trace.record(selectedDepth, worker.budget.nodes() - nodesBefore,
+                                (int) (worker.budget.advances() - advancesBefore), reward);
+
+        if (!Double.isNaN(reward)) {
 
             ///////////////////////////////////////////////////////////////////////////////////
             // 6. Backprop: High, Low, Increment
             ///////////////////////////////////////////////////////////////////////////////////
 
-            // Backprop all the way to the root
-            while (currentNode.parent != null) {
-                switch (backprop) {
-                    // High: Propagate the max reward seen so far
-                    case HIGH:
-                        currentNode.setRewardMax(reward);
-                        currentNode.incrementVisitCount();
-                        currentNode = currentNode.parent;
-                        break;
-
-                    // Increment: Add reward to each node as you go up the tree
-                    case INCREMENT:
-                        currentNode.incrementReward(reward);
-                        currentNode.incrementVisitCount();
-                        currentNode = currentNode.parent;
-                        break;
-
-                    // Low: Propagate the lowest reward seen so far
-                    case LOW:
-                        currentNode.setRewardMin(reward);
-                        currentNode.incrementVisitCount();
-                        currentNode = currentNode.parent;
-                        break;
-
-                    // Default: Propagate Max
-                    default:
-                        currentNode.setRewardMax(reward);
-                        currentNode.incrementVisitCount();
-                        currentNode = currentNode.parent;
-                        break;
+            time = metrics.now();
+            backpropagate(states, currentNode, reward);
+            metrics.phase(GTSMetrics.BACKPROPAGATION, time);
+        }
+    }
+
+    // Backprop all the way to the root (see GTSBackpropRule)
+    void backpropagate (GTSFrontier states, GTSNode currentNode, double reward) {
+        while (currentNode.getParent() != null) {
+            backpropRule.update(currentNode, reward);
+            currentNode.incrementVisitCount();
+            // The reward changed, so let an ordered frontier re-position this node
+            states.update(currentNode);
+            currentNode = currentNode.getParent();
+        }
+    }
+
+    // Level Workers: BFS, but expanding a batch of nodes of the same layer at once. The
+    // copy()+advance() for every child of the batch is fanned out over the level pool,
+    // and each result goes to its own slot of an array (so no locking, and the order
+    // doesn't depend on which thread finished first). The children are then linked into
+    // the tree, added to the frontier and the batch nodes evaluated on this thread, in
+    // the same order as explore() would. Every child gets a seed drawn from the worker's
+    // random stream before the fan-out, and has its own key input (see ForwardModel), so
+    // a fixed seed gives the same tree every time.
+    // Returns how many nodes of the frontier were expanded.
+    int exploreLevel (GTSWorker worker, ElapsedCpuTimer elapsedTimer) {
+        GTSFrontier states = worker.frontier;
+
+        // 1./2. Exploration and Removal: the next nodes of the current layer (timed as
+        // Removal, since polling them is what takes them out of the frontier)
+        long time = metrics.now();
+        ArrayList<GTSNode> batch = new ArrayList<GTSNode>();
+        int depth = states.peek().getDepth();
+        int size = Math.min(LEVEL_BATCH * levelWorkers, worker.budget.iterationsLeft());
+        while (batch.size() < size && !states.isEmpty() && states.peek().getDepth() == depth)
+            batch.add(states.poll());
+        time = metrics.phase(GTSMetrics.REMOVAL, time);
+
+        // 3. Expansion: the states of all their children, in parallel
+        final StateObservation[] parentStates = new StateObservation[batch.size()];
+        final StateObservation[][] childStates = new StateObservation[batch.size()][];
+        ArrayList<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int p = 0; p < batch.size(); p++) {
+            GTSNode node = batch.get(p);
+            parentStates[p] = stateOf(worker, node);
+            if (node.getDepth() >= depthLimit || parentStates[p].isGameOver())
+                continue;
+            childStates[p] = new StateObservation[node.numChildren()];
+            for (int i = 0; i < node.numChildren(); i++) {
+                final int parent = p;
+                final int index = i;
+                final int seed = worker.random.nextInt();
+                tasks.add(new Callable<Void>() {
+                    public Void call () {
+                        StateObservation state = parentStates[parent];
+                        StateObservation next = state.copy();
+                        metrics.copied();
+                        next.setNewSeed(seed);
+                        advance(next, state.getAvailableActions().get(index));
+                        childStates[parent][index] = next;
+                        return null;
+                    }
+                });
+            }
+        }
+        try {
+            for (Future<Void> task : levelPool.invokeAll(tasks))
+                task.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        } catch (ExecutionException ex) {
+            throw new RuntimeException(ex.getCause());
+        }
+        metrics.phase(GTSMetrics.EXPANSION, time);
+
+        for (int p = 0; p < batch.size(); p++) {
+            GTSNode node = batch.get(p);
+            int nodesBefore = worker.budget.nodes();
+            long advancesBefore = worker.trace != null ? worker.budget.advances() : 0;
+            time = metrics.now();
+            if (childStates[p] != null) {
+                for (int i = 0; i < childStates[p].length; i++) {
+                    GTSNode child = addChild(worker, node, i, childStates[p][i]);
+                    // A transposition is already in the tree (and was in the frontier)
+                    if (isOwnChild(node, i, child))
+                        states.add(child);
                 }
             }
+            metrics.phase(GTSMetrics.EXPANSION, time);
+            metrics.reached(node.getDepth());
+
+            // 4./5./6. Simulation, Evaluation and Backprop of the expanded node, as in explore()
+            double reward = rollouts > 1 ? playoutBatch(worker, node, parentStates[p], elapsedTimer)
+                                         : playout(worker.budget, worker.random, node, parentStates[p], elapsedTimer);
+            if (worker.trace != null)
+                worker.trace.record(node.getDepth(), worker.budget.nodes() - nodesBefore,
+                                    (int) (worker.budget.advances() - advancesBefore), reward);
+            if (!Double.isNaN(reward)) {
+                time = metrics.now();
+                backpropagate(states, node, reward);
+                metrics.phase(GTSMetrics.BACKPROPAGATION, time);
+            }
         }
+        return batch.size();
     }
 
-    ///////////////////////////////////////////////////////////////////////////////////////////////
-    // 7. Selection: High, Low
-    ///////////////////////////////////////////////////////////////////////////////////////////////
+    // Tree Workers: one worker's iterations on the shared tree, until its budget runs out
+    void exploreSharedLoop (GTSWorker worker, GTSNode root, ElapsedCpuTimer deadline) {
+        GTSBudget budget = worker.budget;
+        budget.reset();
+        if (worker.trace != null)
+            worker.trace.startSearch();
+        while (budget.hasIteration(deadline)) {
+            budget.startIteration();
+            exploreShared(worker, root, deadline);
+            budget.endIteration();
+        }
+    }
 
-    // (3) Make the final decision of what action to actually take next
-    // Biases actions with lower index (in case of tie)
-    Types.ACTIONS decide (GTSNode root) {
-        int action = 0;
-
-        switch (selection) {
-            // High: Select the node with the highest reward
-            case HIGH:
-                double bestReward = -Double.MAX_VALUE;
-                for (int i = 0; i < root.children.length; i++) {
-                    if (root.children[i] != null && bestReward < root.children[i].getReward()) {
-                        action = i;
-                        bestReward = root.children[i].getReward();
-                    }
+    // Tree Workers: one UCT iteration on the tree shared by all the workers. Statistics are
+    // updated with atomic operations and new children are installed with a CAS, so there
+    // are no locks (but for the first reward of each node when the evaluator replaces the
+    // initial 0 with it, see GTSBackpropRule).
+    // Every node a thread walks through carries a virtual loss (an extra visit, plus a
+    // reward penalty when backprop is INCREMENT) until that thread backs up its result,
+    // which steers the other threads towards different parts of the tree.
+    // The threads advance their copies at the same time, which is only sound because each
+    // copy has its own key input (see ForwardModel.getKeyHandler()).
+    void exploreShared (GTSWorker worker, GTSNode root, ElapsedCpuTimer elapsedTimer) {
+        ArrayList<GTSNode> path = worker.path;
+        path.clear();
+
+        // 1. Exploration: UCT down to a node that still has unexplored children
+        long time = metrics.now();
+        GTSNode currentNode = root;
+        while (currentNode.numChildren() != 0 && isFullyExpanded(currentNode)) {
+            int bestIndex = 0;
+            double bestValue = -Double.MAX_VALUE;
+            int totalVisits = currentNode.getVisitCountAtomic();
+            for (int i = 0; i < currentNode.numChildren(); i++) {
+                GTSNode child = currentNode.getChildAtomic(i);
+                double thisValue = uct(child.getRewardAtomic(), child.getVisitCountAtomic(), totalVisits);
+                if (thisValue > bestValue) {
+                    bestValue = thisValue;
+                    bestIndex = i;
                 }
-                break;
+            }
+            currentNode = currentNode.getChildAtomic(bestIndex);
+            addVirtualLoss(currentNode);
+            path.add(currentNode);
+        }
 
-            // Low: Select the node with the lowest reward
-            case LOW:
-                double lowReward = Double.MAX_VALUE;
-                for (int i = 0; i < root.children.length; i++) {
-                    if (root.children[i] != null && lowReward > root.children[i].getReward()) {
-                        action = i;
-                        lowReward = root.children[i].getReward();
-                    }
+        int selectedDepth = currentNode.getDepth();
+        int nodesBefore = worker.budget.nodes();
+        long advancesBefore = worker.trace != null ? worker.budget.advances() : 0;
+        time = metrics.phase(GTSMetrics.EXPLORATION, time);
+
+        // The game state at the selected node (rebuilt from the root in Open Loop mode)
+        StateObservation currentState = stateOf(worker, currentNode);
+
+        // 3. Expansion: if another thread installs the same child first, we use theirs
+        if (currentNode.getDepth() < depthLimit && !currentState.isGameOver()) {
+            GTSNode expanded = expansionPolicy.expandShared(worker, currentNode, currentState);
+            currentState = worker.leafState;
+            if (expanded != currentNode) {
+                currentNode = expanded;
+                addVirtualLoss(currentNode);
+                path.add(currentNode);
+            }
+        }
+        metrics.phase(GTSMetrics.EXPANSION, time);
+        metrics.reached(currentNode.getDepth());
+
+        // 4. Simulation and 5. Evaluation, as in explore()
+        double reward = rollouts > 1 ? playoutBatch(worker, currentNode, currentState, elapsedTimer)
+                                     : playout(worker.budget, worker.random, currentNode, currentState, elapsedTimer);
+        boolean evaluated = !Double.isNaN(reward);
+        if (worker.trace != null)
+            worker.trace.record(selectedDepth, worker.budget.nodes() - nodesBefore,
+                                (int) (worker.budget.advances() - advancesBefore), reward);
+
+        // 6. Backprop: take the virtual loss back off, and add the real result if there is one
+        time = metrics.now();
+        for (int i = path.size() - 1; i >= 0; i--) {
+            GTSNode node = path.get(i);
+            removeVirtualLoss(node);
+            if (!evaluated)
+                continue;
+            backpropRule.updateAtomic(node, reward);
+            node.addVisitCountAtomic(1);
+        }
+        metrics.phase(GTSMetrics.BACKPROPAGATION, time);
+    }
+
+    // The state reached from 'state' by the action at 'index', with the next seed of the
+    // worker's stream (a copy would otherwise get a random generator of its own)
+    StateObservation nextState (GTSWorker worker, StateObservation state, int index) {
+        StateObservation nextState = state.copy();
+        metrics.copied();
+        nextState.setNewSeed(worker.random.nextInt());
+        advance(nextState, state.getAvailableActions().get(index));
+        return nextState;
+    }
+
+    // Advance 'state' along one edge of the tree: 'action' repeated for macroLength ticks
+    // (or until the game ends), on one copy
+    void advance (StateObservation state, Types.ACTIONS action) {
+        state.advance(action);
+        int ticks = 1;
+        for (; ticks < macroLength && !state.isGameOver(); ticks++)
+            state.advance(action);
+        metrics.advanced(ticks);
+    }
+
+    // Tree Workers: install the child of 'parent' at 'index' in the shared tree with a CAS.
+    // Returns whichever child won (ours, or the one another thread installed first) and
+    // leaves the state we computed for it in worker.leafState.
+    GTSNode addSharedChild (GTSWorker worker, GTSNode parent, int index, StateObservation state) {
+        StateObservation nextState = nextState(worker, state, index);
+        GTSNode child = newChild(parent, index, nextState);
+        GTSNode installed = parent.setChildAtomic(index, child);
+        if (installed == child)
+            worker.budget.addNode();
+        worker.leafState = nextState;
+        return installed;
+    }
+
+    // Create the child of 'parent' at 'index' in the worker's tree, whose state is 'nextState'
+    // With a Transposition Table, if that state is already in the tree, its node becomes the
+    // child instead (it keeps its own parent and action, so callers can tell with isOwnChild)
+    GTSNode addChild (GTSWorker worker, GTSNode parent, int index, StateObservation nextState) {
+        if (collapse == GTSParams.COLLAPSE.YES) {
+            GTSNode sibling = sameSibling(parent, index, nextState);
+            if (sibling != null) {
+                parent.setChild(index, sibling);
+                worker.collapsed++;
+                return sibling;
+            }
+        }
+
+        long hash = 0;
+        if (worker.transpositions != null) {
+            hash = GTSTranspositionTable.hash(nextState);
+            GTSNode existing = worker.transpositions.get(hash);
+            // The hash only says it may be the same state: make sure, as Collapse Children
+            // does, so a collision never links an unrelated subtree in
+            if (existing != null && existing != parent.getChild(index) && existing.thisState != null
+                && digest(existing.thisState) == digest(nextState) && sameState(nextState, existing.thisState)) {
+                worker.transpositions.hit();
+                parent.setChild(index, existing);
+                return existing;
+            }
+        }
+
+        GTSNode child = worker.newNode(openLoop == GTSParams.OPENLOOP.YES ? null : nextState, parent,
+                                       index, nextState.getAvailableActions().size());
+        if (worker.memory != null)
+            worker.memory.added(parent, index);
+        parent.setChild(index, child);
+        if (worker.cache != null)
+            worker.cache.admit(child);
+        if (worker.transpositions != null)
+            worker.transpositions.put(hash, child);
+        worker.budget.addNode();
+        return child;
+    }
+
+    // Whether 'child' was created for this slot, rather than merged into it as a transposition
+    // (or collapsed into it as a sibling)
+    boolean isOwnChild (GTSNode parent, int index, GTSNode child) {
+        return child.getParent() == parent && child.getActionIndex() == index;
+    }
+
+    // Collapse Children: a child of 'parent' already in the tree whose state is the one
+    // the action at 'index' leads to, e.g. walking into a wall and NIL. The actions are
+    // first compared by a digest of what an action usually changes (the avatar, the
+    // score and the game tick), and only the ones that match by the full sameState().
+    // Siblings whose state was dropped by the State Cache are not compared.
+    GTSNode sameSibling (GTSNode parent, int index, StateObservation nextState) {
+        long digest = digest(nextState);
+        for (int i = 0; i < parent.numChildren(); i++) {
+            GTSNode sibling = parent.getChild(i);
+            if (i == index || !parent.ownsChild(i) || sibling.thisState == null)
+                continue;
+            if (digest(sibling.thisState) == digest && sameState(nextState, sibling.thisState))
+                return sibling;
+        }
+        return null;
+    }
+
+    // Collapse Children and the Transposition Table: StateObservation.equiv(), but for what
+    // the game does from here on.
+    // equiv() also compares the history of events, so bumping into a wall (a collision
+    // event) is never the same as not moving, although nothing else tells them apart.
+    static boolean sameState (StateObservation a, StateObservation b) {
+        if (a.getGameScore() != b.getGameScore() || a.getGameTick() != b.getGameTick()
+            || a.isGameOver() != b.isGameOver() || a.getGameWinner() != b.getGameWinner()
+            || !a.getAvatarPosition().equals(b.getAvatarPosition())
+            || !a.getAvatarOrientation().equals(b.getAvatarOrientation())
+            || a.getAvatarSpeed() != b.getAvatarSpeed()
+            || !a.getAvatarResources().equals(b.getAvatarResources()))
+            return false;
+
+        ArrayList<Observation>[][] gridA = a.getObservationGrid();
+        ArrayList<Observation>[][] gridB = b.getObservationGrid();
+        for (int i = 0; i < gridA.length; i++) {
+            for (int j = 0; j < gridA[i].length; j++) {
+                if (gridA[i][j].size() != gridB[i][j].size())
+                    return false;
+                for (int k = 0; k < gridA[i][j].size(); k++) {
+                    Observation obsA = gridA[i][j].get(k);
+                    Observation obsB = gridB[i][j].get(k);
+                    if (obsA.obsID != obsB.obsID || obsA.itype != obsB.itype || !obsA.position.equals(obsB.position))
+                        return false;
                 }
-                break;
+            }
+        }
+        return true;
+    }
 
-            // Most Visits: Select the node that's been visited the most
-            case MOSTVISITS:
-                double mostVisits = -1;
-                for (int i = 0; i < root.children.length; i++) {
-                    if (root.children[i] != null && mostVisits < root.children[i].getReward()) {
-                        action = i;
-                        mostVisits = root.children[i].getReward();
-                    }
+    // Collapse Children and the Transposition Table: the cheap part of the comparison
+    static long digest (StateObservation state) {
+        Vector2d position = state.getAvatarPosition();
+        Vector2d orientation = state.getAvatarOrientation();
+        long digest = GTSTranspositionTable.mix(Double.doubleToLongBits(position.x)) * 31
+                      + Double.doubleToLongBits(position.y);
+        digest = GTSTranspositionTable.mix(digest ^ Double.doubleToLongBits(orientation.x)) * 31
+                 + Double.doubleToLongBits(orientation.y);
+        digest = GTSTranspositionTable.mix(digest ^ Double.doubleToLongBits(state.getGameScore())) * 31
+                 + state.getGameTick();
+        return GTSTranspositionTable.mix(digest ^ state.getAvatarResources().hashCode());
+    }
+
+    // A new plain child of 'parent' at 'index' (for the shared tree, installed by the caller)
+    GTSNode newChild (GTSNode parent, int index, StateObservation nextState) {
+        return new GTSNode(openLoop == GTSParams.OPENLOOP.YES ? null : nextState, parent,
+                           index, nextState.getAvailableActions().size());
+    }
+
+    // The game state at 'node'. Open Loop nodes don't keep their state, so it is rebuilt by
+    // copying the closest ancestor that has one (the root) and replaying the actions on
+    // the path from there. Callers copy the result before advancing it.
+    // With a State Cache, nodes whose state was evicted are rebuilt the same way, from the
+    // closest ancestor still in the cache, and the rebuilt state goes back into the cache.
+    StateObservation stateOf (GTSWorker worker, GTSNode node) {
+        if (node.thisState != null) {
+            if (worker.cache != null)
+                worker.cache.touch(node);
+            return node.thisState;
+        }
+
+        // Walk up to the ancestor with a state, remembering the actions taken
+        int[] path = new int[node.getDepth()];
+        int length = 0;
+        GTSNode ancestor = node;
+        while (ancestor.thisState == null) {
+            path[length++] = ancestor.getActionIndex();
+            ancestor = ancestor.getParent();
+        }
+
+        // Replay them from the ancestor's state
+        StateObservation state = ancestor.thisState.copy();
+        metrics.copied();
+        state.setNewSeed(worker.random.nextInt());
+        for (int i = length - 1; i >= 0 && !state.isGameOver(); i--)
+            advance(state, state.getAvailableActions().get(path[i]));
+        if (worker.cache != null) {
+            node.thisState = state;
+            worker.cache.admit(node);
+        }
+        return state;
+    }
+
+    boolean isFullyExpanded (GTSNode node) {
+        for (int i = 0; i < node.numChildren(); i++)
+            if (node.getChildAtomic(i) == null)
+                return false;
+        return true;
+    }
+
+    void addVirtualLoss (GTSNode node) {
+        node.addVisitCountAtomic(1);
+        backpropRule.applyVirtualLoss(node, -virtualLoss);
+    }
+
+    void removeVirtualLoss (GTSNode node) {
+        node.addVisitCountAtomic(-1);
+        backpropRule.applyVirtualLoss(node, virtualLoss);
+    }
+
+    // The value of a node from the point of view of the Selection rule (higher is better):
+    // the mean reward with INCREMENT backprop, the best (or worst) one seen otherwise
+    double valueOf (GTSNode node) {
+        double value = node.getReward();
+        if (backprop == GTSParams.BACKPROPAGATION.INCREMENT)
+            value = node.getVisitCount() == 0 ? -Double.MAX_VALUE : value / node.getVisitCount();
+        return selection == GTSParams.SELECTION.LOW ? -value : value;
+    }
+
+    // The UCT value of a child, based on the "uct" function in the SampleMCTS SingleTreeNode
+    double uct (double reward, int childVisits, int totalVisits) {
+        double weight = Math.sqrt(2);
+        return (reward) / (childVisits + this.epsilon) +
+               weight * Math.sqrt(Math.log(totalVisits + 1)/(childVisits + this.epsilon));
+    }
+
+    // One playout from 'node': simulate, then evaluate the final state. Evaluation is done
+    // *only* if the node is past the depth limit or the playout ended in a game over state,
+    // otherwise this returns NaN
+    // (Rollout Length: the playout stops after k steps on purpose, so its state is always
+    // evaluated; the same goes for evaluators that ask for every node, like DISTANCE)
+    //*/ Is this really what I want?
+    double playout (GTSBudget budget, Random random, GTSNode node, StateObservation state,
+                    ElapsedCpuTimer elapsedTimer) {
+        long time = metrics.now();
+        StateObservation finalState = simulationPolicy.simulate(budget, random, node, state, elapsedTimer);
+        time = metrics.phase(GTSMetrics.SIMULATION, time);
+        if (node.getDepth() >= depthLimit || finalState.isGameOver() || rolloutLength > 0
+            || evaluator.evaluatesEveryNode()) {
+            double reward = evaluator.evaluate(finalState);
+            metrics.phase(GTSMetrics.EVALUATION, time);
+            return reward;
+        }
+        return Double.NaN;
+    }
+
+    // Rollouts: run K playouts from the same node at once on the rollout pool, each on its
+    // own copy of the state with its own random stream, and aggregate the rewards of those
+    // that were evaluated (mean or max). NaN if none of them were. Each copy applies the
+    // actions drawn from its own stream because it has its own key input (see ForwardModel).
+    // eval() has already turned the timer into a wall-clock one (see wallClockDeadline())
+    double playoutBatch (GTSWorker worker, final GTSNode node, final StateObservation state,
+                         final ElapsedCpuTimer elapsedTimer) {
+        ArrayList<Callable<Double>> batch = new ArrayList<Callable<Double>>(rollouts);
+        for (int i = 0; i < rollouts; i++) {
+            final Random random = worker.rolloutRandoms[i];
+            final GTSBudget budget = worker.budget;
+            batch.add(new Callable<Double>() {
+                public Double call () {
+                    return playout(budget, random, node, state, elapsedTimer);
                 }
-                break;
+            });
+        }
 
-            // Default: Just select first action
-            default:
-                break;
+        double total = 0;
+        double best = -Double.MAX_VALUE;
+        int evaluated = 0;
+        try {
+            for (Future<Double> result : rolloutPool.invokeAll(batch)) {
+                double reward = result.get();
+                if (Double.isNaN(reward))
+                    continue;
+                total += reward;
+                best = Math.max(best, reward);
+                evaluated++;
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        } catch (ExecutionException ex) {
+            throw new RuntimeException(ex.getCause());
         }
 
-        return root.thisState.getAvailableActions().get(action);
+        if (evaluated == 0)
+            return Double.NaN;
+        return rolloutAggregate == GTSParams.AGGREGATE.MAX ? best : total / evaluated;
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+    // 7. Selection: High, Low
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    // (3) Make the final decision of what action to actually take next
+    // Biases actions with lower index (in case of tie)
+    Types.ACTIONS decide (GTSNode root) {
+        long start = metrics.now();
+        Types.ACTIONS action = root.thisState.getAvailableActions().get(selectionRule.select(root));
+        metrics.phase(GTSMetrics.SELECTION, start);
+        return action;
     }
 
 }
@@ -0,0 +1,89 @@
+// Code written by Wells Lucas Santo
+package controllers.GeneralTreeSearch;
+
+// Backpropagation: how a reward is combined into the nodes on the way back to the root
+// (see GTSComponent). Visit counts are updated by the search itself, after update(), so
+// a node with no visits has not had a reward yet.
+public abstract class GTSBackpropRule extends GTSComponent {
+
+    public abstract void update (GTSNode node, double reward);
+
+    // Tree Workers: the same, with the atomic GTSNode operations
+    public abstract void updateAtomic (GTSNode node, double reward);
+
+    // Tree Workers: add 'loss' to the reward of a node a thread is walking through, if
+    // rewards are summed (it is taken back off with the opposite sign afterwards)
+    public void applyVirtualLoss (GTSNode node, double loss) {
+    }
+
+    // The built-in rule for a TSDL Backpropagation value
+    static GTSBackpropRule create (GTSParams.BACKPROPAGATION backprop) {
+        if (backprop == GTSParams.BACKPROPAGATION.INCREMENT)
+            return new Increment();
+        if (backprop == GTSParams.BACKPROPAGATION.LOW)
+            return new Low();
+        // Default: Propagate Max
+        return new High();
+    }
+
+    // High: Propagate the max reward seen so far
+    // (compared with the 0 a node starts with, unless the evaluator replaces it)
+    static class High extends GTSBackpropRule {
+        boolean replaceInitial;
+
+        public void bind (GTSAlgo algo) {
+            super.bind(algo);
+            replaceInitial = algo.evaluator.replacesInitialReward();
+        }
+
+        public void update (GTSNode node, double reward) {
+            if (replaceInitial && node.getVisitCount() == 0)
+                node.setReward(reward);
+            else
+                node.setRewardMax(reward);
+        }
+
+        public void updateAtomic (GTSNode node, double reward) {
+            if (!replaceInitial || !node.setFirstRewardAtomic(reward))
+                node.setRewardMaxAtomic(reward);
+        }
+    }
+
+    // Low: Propagate the lowest reward seen so far
+    // (compared with the 0 a node starts with, unless the evaluator replaces it)
+    static class Low extends GTSBackpropRule {
+        boolean replaceInitial;
+
+        public void bind (GTSAlgo algo) {
+            super.bind(algo);
+            replaceInitial = algo.evaluator.replacesInitialReward();
+        }
+
+        public void update (GTSNode node, double reward) {
+            if (replaceInitial && node.getVisitCount() == 0)
+                node.setReward(reward);
+            else
+                node.setRewardMin(reward);
+        }
+
+        public void updateAtomic (GTSNode node, double reward) {
+            if (!replaceInitial || !node.setFirstRewardAtomic(reward))
+                node.setRewardMinAtomic(reward);
+        }
+    }
+
+    // Increment: Add reward to each node as you go up the tree
+    static class Increment extends GTSBackpropRule {
+        public void update (GTSNode node, double reward) {
+            node.incrementReward(reward);
+        }
+
+        public void updateAtomic (GTSNode node, double reward) {
+            node.incrementRewardAtomic(reward);
+        }
+
+        public void applyVirtualLoss (GTSNode node, double loss) {
+            node.incrementRewardAtomic(loss);
+        }
+    }
+}
@@ -0,0 +1,238 @@
+// Code written by Wells Lucas Santo
+package controllers.GeneralTreeSearch;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Comparator;
+
+// Frontier for the BEAM Exploration value: the tree is expanded level by level, and of
+// all the children produced by one level only the best 'width' (by the Evaluation of
+// their state) make it into the next one. They are collected in a min-heap of at most
+// 'width' nodes with the worst on top, so a new child either replaces the worst or is
+// dropped straight away. "Best" follows the Selection rule: with Selection: LOW the
+// Evaluation is a cost (e.g. DISTANCE), so the scores are negated and the beam keeps
+// the lowest, as GTSAlgo.valueOf() does. Dropped nodes are unlinked from the tree and lose their state,
+// so the tree (and the memory it holds on to) grows linearly with depth instead of as
+// branching^depth.
+public class GTSBeamFrontier extends GTSFrontier {
+
+    int width;
+    GTSEvaluator evaluator;
+    boolean lowest;
+
+    // The level being expanded, best first
+    ArrayDeque<GTSNode> level = new ArrayDeque<GTSNode>();
+    int levelDepth = -1;
+
+    // The beam being built for the next level (min-heap on score)
+    GTSNode[] heap;
+    double[] scores;
+    int size;
+
+    // Per depth: how many nodes were offered to the beam, and how many were dropped
+    int[] offered = new int[16];
+    int[] pruned = new int[16];
+
+    public GTSBeamFrontier (int width, GTSEvaluator evaluator, boolean lowest) {
+        this.width = Math.max(width, 1);
+        this.evaluator = evaluator;
+        this.lowest = lowest;
+        heap = new GTSNode[this.width];
+        scores = new double[this.width];
+    }
+
+    void add (GTSNode node) {
+        if (node.frontierIndex != -1)
+            return;
+        // The first node (the root), and anything not deeper than the current level,
+        // is expanded as part of the current level
+        if (levelDepth == -1 || node.getDepth() <= levelDepth) {
+            levelDepth = Math.max(levelDepth, node.getDepth());
+            node.frontierIndex = 0;
+            level.add(node);
+            return;
+        }
+        offer(node);
+    }
+
+    GTSNode peek () {
+        if (level.isEmpty() && size > 0)
+            nextLevel();
+        return level.peekFirst();
+    }
+
+    GTSNode poll () {
+        GTSNode node = peek();
+        if (node != null) {
+            level.pollFirst();
+            node.frontierIndex = -1;
+        }
+        return node;
+    }
+
+    boolean remove (GTSNode node) {
+        int index = node.frontierIndex;
+        if (index == -1)
+            return false;
+        if (index < size && heap[index] == node) {
+            removeAt(index);
+        } else if (!level.remove(node)) {
+            return false;
+        }
+        node.frontierIndex = -1;
+        return true;
+    }
+
+    int size () {
+        return level.size() + size;
+    }
+
+    void clear () {
+        for (GTSNode node : level)
+            node.frontierIndex = -1;
+        level.clear();
+        for (int i = 0; i < size; i++) {
+            heap[i].frontierIndex = -1;
+            heap[i] = null;
+        }
+        size = 0;
+        levelDepth = -1;
+        Arrays.fill(offered, 0);
+        Arrays.fill(pruned, 0);
+    }
+
+    // e.g. "Beam (width 4): depth 1 kept 4/5, depth 2 kept 4/20"
+    String statistics () {
+        StringBuilder stats = new StringBuilder("Beam (width " + width + "):");
+        String separator = " ";
+        for (int depth = 0; depth < offered.length; depth++) {
+            if (offered[depth] == 0)
+                continue;
+            stats.append(separator).append("depth ").append(depth).append(" kept ")
+                 .append(offered[depth] - pruned[depth]).append("/").append(offered[depth]);
+            separator = ", ";
+        }
+        return stats.toString();
+    }
+
+    // A child for the next level: keep it if it beats the worst node of the beam
+    void offer (GTSNode node) {
+        int depth = node.getDepth();
+        if (depth >= offered.length) {
+            offered = Arrays.copyOf(offered, depth * 2);
+            pruned = Arrays.copyOf(pruned, depth * 2);
+        }
+        offered[depth]++;
+
+        double score = score(node);
+        if (size < width) {
+            heap[size] = node;
+            scores[size] = score;
+            node.frontierIndex = size;
+            size++;
+            siftUp(size - 1);
+        } else if (score > scores[0]) {
+            GTSNode worst = heap[0];
+            pruned[worst.getDepth()]++;
+            worst.frontierIndex = -1;
+            discard(worst);
+            heap[0] = node;
+            scores[0] = score;
+            node.frontierIndex = 0;
+            siftDown(0);
+        } else {
+            pruned[depth]++;
+            discard(node);
+        }
+    }
+
+    // Nodes are ranked by the Evaluation of their state (Open Loop nodes have none, so
+    // they are ranked by their reward so far), higher is better
+    double score (GTSNode node) {
+        double score = node.thisState != null ? evaluator.evaluate(node.thisState) : node.getReward();
+        return lowest ? -score : score;
+    }
+
+    // Cut a node out of the tree, so it and its state can be garbage collected
+    void discard (GTSNode node) {
+        node.thisState = null;
+        GTSNode parent = node.getParent();
+        if (parent != null) {
+            // Every slot the node is in (see Collapse Children)
+            for (int i = 0; i < parent.numChildren(); i++)
+                if (parent.getChild(i) == node)
+                    parent.setChild(i, null);
+        }
+    }
+
+    // The beam becomes the level to expand, best first
+    void nextLevel () {
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++)
+            order[i] = i;
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare (Integer a, Integer b) {
+                return Double.compare(scores[b], scores[a]);
+            }
+        });
+        levelDepth = -1;
+        for (Integer i : order) {
+            GTSNode node = heap[i];
+            node.frontierIndex = 0;
+            level.add(node);
+            levelDepth = Math.max(levelDepth, node.getDepth());
+        }
+        for (int i = 0; i < size; i++)
+            heap[i] = null;
+        size = 0;
+    }
+
+    void removeAt (int index) {
+        size--;
+        if (index != size) {
+            heap[index] = heap[size];
+            scores[index] = scores[size];
+            heap[index].frontierIndex = index;
+            siftDown(index);
+            siftUp(index);
+        }
+        heap[size] = null;
+    }
+
+    void siftUp (int index) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (scores[parent] <= scores[index])
+                break;
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    void siftDown (int index) {
+        while (true) {
+            int smallest = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left < size && scores[left] < scores[smallest])
+                smallest = left;
+            if (right < size && scores[right] < scores[smallest])
+                smallest = right;
+            if (smallest == index)
+                return;
+            swap(index, smallest);
+            index = smallest;
+        }
+    }
+
+    void swap (int i, int j) {
+        GTSNode node = heap[i];
+        heap[i] = heap[j];
+        heap[j] = node;
+        double score = scores[i];
+        scores[i] = scores[j];
+        scores[j] = score;
+        heap[i].frontierIndex = i;
+        heap[j].frontierIndex = j;
+    }
+}
@@ -0,0 +1,124 @@
+// Code written by Wells Lucas Santo
+package controllers.GeneralTreeSearch;
+
+import tools.ElapsedCpuTimer;
+
+// Decides whether there is time for one more iteration of the search, or one more
+// advance() in a playout. Instead of fixed safety margins, it keeps a running average
+// (an exponentially weighted moving average) of how long an iteration and an advance()
+// actually take in this game, and only starts one if twice that still fits in the time
+// left, like the avgTimeTaken check in sampleMCTS.SingleTreeNode.mctsSearch().
+//
+// With an Iteration Budget or a Node Budget the clock is ignored altogether, so that
+// the same seed always builds the same tree (for benchmarking; these can overrun the
+// time limit of the game).
+//
+// Each worker has its own, since each runs on its own thread.
+public class GTSBudget {
+
+    // Weight of the newest measurement in the averages
+    static final double ALPHA = 0.2;
+
+    // Time always kept in reserve to pick the action and return it
+    static final double RESERVE_MILLIS = 1.0;
+
+    int iterationBudget;
+    int nodeBudget;
+
+    // Running averages, in milliseconds (kept from one eval() call to the next)
+    double iterationMillis;
+    double advanceMillis;
+
+    // Counts for the current search
+    int iterations;
+    int nodes;
+
+    // advance() calls of all the playouts ever (see Trace)
+    long advances;
+
+    long iterationStart;
+
+    public GTSBudget (int iterationBudget, int nodeBudget) {
+        this.iterationBudget = iterationBudget;
+        this.nodeBudget = nodeBudget;
+    }
+
+    public boolean isFixed () {
+        return iterationBudget > 0 || nodeBudget > 0;
+    }
+
+    // A new search starts
+    public void reset () {
+        iterations = 0;
+        nodes = 0;
+    }
+
+    public int iterations () {
+        return iterations;
+    }
+
+    public int nodes () {
+        return nodes;
+    }
+
+    // Whether to start another iteration
+    public boolean hasIteration (ElapsedCpuTimer elapsedTimer) {
+        if (isFixed())
+            return (iterationBudget <= 0 || iterations < iterationBudget) &&
+                   (nodeBudget <= 0 || nodes < nodeBudget);
+        // The first iteration of a search always runs if there's any time at all, or one
+        // slow iteration (JIT, garbage collection) would keep the average too high to ever
+        // run another one
+        if (iterations == 0)
+            return elapsedTimer.remainingTimeMillis() > RESERVE_MILLIS;
+        return elapsedTimer.remainingTimeMillis() > RESERVE_MILLIS + 2 * iterationMillis;
+    }
+
+    // Whether to do another advance() in a playout
+    public boolean hasAdvance (ElapsedCpuTimer elapsedTimer) {
+        if (isFixed())
+            return true;
+        return elapsedTimer.remainingTimeMillis() > RESERVE_MILLIS + 2 * advanceMillis;
+    }
+
+    public void startIteration () {
+        iterationStart = System.nanoTime();
+    }
+
+    public void endIteration () {
+        iterations++;
+        iterationMillis = average(iterationMillis, (System.nanoTime() - iterationStart) / 1e6, iterationMillis == 0);
+    }
+
+    // A batch of 'count' iterations done at once (see Level Workers). The average is kept
+    // per batch, since the next thing to fit in the time left is another batch.
+    public void endIterations (int count) {
+        iterations += count;
+        iterationMillis = average(iterationMillis, (System.nanoTime() - iterationStart) / 1e6, iterationMillis == 0);
+    }
+
+    // How many more iterations the Iteration Budget allows (no limit without one)
+    public int iterationsLeft () {
+        return iterationBudget > 0 ? iterationBudget - iterations : Integer.MAX_VALUE;
+    }
+
+    public void addNode () {
+        nodes++;
+    }
+
+    // A playout did 'advances' calls to advance() in 'nanos' nanoseconds. Playouts of
+    // the same worker can run at once (see Rollouts), hence the lock.
+    public synchronized void recordAdvances (int advances, long nanos) {
+        if (advances > 0)
+            advanceMillis = average(advanceMillis, nanos / 1e6 / advances, advanceMillis == 0);
+        this.advances += advances;
+    }
+
+    public synchronized long advances () {
+        return advances;
+    }
+
+    static double average (double average, double sample, boolean first) {
+        return first ? sample : average + ALPHA * (sample - average);
+    }
+}
@@ -0,0 +1,37 @@
+// Code written by Wells Lucas Santo
+package controllers.GeneralTreeSearch;
+
+// Base of the pluggable parts of the search (exploration, expansion, simulation,
+// evaluation, backpropagation and selection). GTSAlgo picks one implementation of each
+// when it reads the TSDL file and calls bind() on it once; from then on every call
+// site in the search only ever sees that one class, so the JIT can inline it.
+//
+// A TSDL value can either be one of the GTSParams values, or the fully qualified name
+// of a class with a public no-argument constructor that extends the matching base:
+//     Evaluation: mygames.MyEvaluator
+// One instance is shared by all the workers, so components must not keep per-search
+// state (what they need per tree belongs on the GTSWorker).
+public abstract class GTSComponent {
+
+    // The search this component belongs to (for its parameters and helpers)
+    protected GTSAlgo algo;
+
+    // Called once, after all the TSDL parameters were read
+    public void bind (GTSAlgo algo) {
+        this.algo = algo;
+    }
+
+    // Is this TSDL value a class name rather than a GTSParams value?
+    static boolean isClassName (String value) {
+        return value.indexOf('.') != -1;
+    }
+
+    // Instantiate a component from its class name
+    static <T extends GTSComponent> T load (String className, Class<T> type) {
+        try {
+            return type.cast(Class.forName(className).getDeclaredConstructor().newInstance());
+        } catch (ReflectiveOperationException | ClassCastException ex) {
+            throw new IllegalArgumentException("Can't use " + className + " as a " + type.getSimpleName(), ex);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+// Code written by Wells Lucas Santo
+package controllers.GeneralTreeSearch;
+
+import core.game.Observation;
+import core.game.StateObservation;
+import tools.Vector2d;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+
+// DISTANCE evaluation: how many moves the avatar is away from the closest goal, for every
+// cell of the level, so that evaluating a state is one array lookup.
+//
+// The field is a breadth-first flood fill (4-connected) from every goal cell at once,
+// over the static layout of the level:
+// - Obstacles are the immovable sprites of the types found on the border of the level
+//   (every level is walled in, so those are the walls), seen on the first build.
+// - Goals are the portals, the resources, and every other immovable sprite (e.g. the
+//   goal or the coins of a maze). NPCs are not: they move every tick, and whether
+//   they are something to reach or to run from depends on the game.
+//
+// The field is only built again when the static sprites change (e.g. a coin was
+// collected), which is checked with a hash of their types and cells once per eval().
+// It is then built again in full: there is no incremental update of the distances.
+public class GTSDistanceField {
+
+    int width;
+    int height;
+    int blockSize;
+
+    // Distance in moves from each cell (x * height + y) to the closest goal, or
+    // UNREACHABLE for obstacles and cells no goal can be reached from
+    int[] distance;
+    int[] queue;
+
+    // The immovable types treated as obstacles
+    HashSet<Integer> obstacleTypes;
+
+    // Hash of the static sprites the field was built for
+    long layout;
+    boolean built;
+
+    static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    // Make sure the field is the one for the static sprites of 'state'. Returns whether
+    // it had to be built again.
+    public boolean update (StateObservation state) {
+        ArrayList<Observation>[][] grid = state.getObservationGrid();
+        if (!built || grid.length != width || grid[0].length != height) {
+            width = grid.length;
+            height = grid[0].length;
+            blockSize = state.getBlockSize();
+            distance = new int[width * height];
+            queue = new int[width * height];
+            obstacleTypes = borderTypes(state);
+        }
+
+        ArrayList<Observation> immovables = flatten(state.getImmovablePositions());
+        ArrayList<Observation> goals = flatten(state.getPortalsPositions());
+        goals.addAll(flatten(state.getResourcesPositions()));
+
+        long hash = 0;
+        for (Observation obs : immovables)
+            hash += GTSTranspositionTable.mix(obs.itype * 0x9E3779B97F4A7C15L + cellOf(obs.position));
+        for (Observation obs : goals)
+            hash += GTSTranspositionTable.mix(obs.itype * 0xC2B2AE3D27D4EB4FL + cellOf(obs.position));
+        if (built && hash == layout)
+            return false;
+        layout = hash;
+        built = true;
+
+        // Obstacles first, so that a goal on top of one still counts
+        Arrays.fill(distance, -1);
+        for (Observation obs : immovables)
+            if (obstacleTypes.contains(obs.itype))
+                setCell(obs.position, UNREACHABLE);
+            else
+                goals.add(obs);
+
+        int head = 0;
+        int tail = 0;
+        for (Observation obs : goals) {
+            int cell = cellOf(obs.position);
+            if (cell >= 0 && distance[cell] != 0) {
+                distance[cell] = 0;
+                queue[tail++] = cell;
+            }
+        }
+        while (head < tail) {
+            int cell = queue[head++];
+            int x = cell / height;
+            int y = cell % height;
+            int next = distance[cell] + 1;
+            if (x > 0          && distance[cell - height] == -1) { distance[cell - height] = next; queue[tail++] = cell - height; }
+            if (x < width - 1  && distance[cell + height] == -1) { distance[cell + height] = next; queue[tail++] = cell + height; }
+            if (y > 0          && distance[cell - 1] == -1)      { distance[cell - 1] = next;      queue[tail++] = cell - 1; }
+            if (y < height - 1 && distance[cell + 1] == -1)      { distance[cell + 1] = next;      queue[tail++] = cell + 1; }
+        }
+        for (int i = 0; i < distance.length; i++)
+            if (distance[i] == -1)
+                distance[i] = UNREACHABLE;
+        return true;
+    }
+
+    // Moves from the avatar of 'state' to the closest goal (UNREACHABLE if there is none)
+    public int distance (StateObservation state) {
+        int cell = cellOf(state.getAvatarPosition());
+        return cell < 0 ? UNREACHABLE : distance[cell];
+    }
+
+    public int cells () {
+        return width * height;
+    }
+
+    int cellOf (Vector2d position) {
+        int x = (int) (position.x / blockSize);
+        int y = (int) (position.y / blockSize);
+        if (x < 0 || x >= width || y < 0 || y >= height)
+            return -1;
+        return x * height + y;
+    }
+
+    void setCell (Vector2d position, int value) {
+        int cell = cellOf(position);
+        if (cell >= 0)
+            distance[cell] = value;
+    }
+
+    // The immovable types on the border of the level
+    HashSet<Integer> borderTypes (StateObservation state) {
+        HashSet<Integer> types = new HashSet<Integer>();
+        for (Observation obs : flatten(state.getImmovablePositions())) {
+            int x = (int) (obs.position.x / blockSize);
+            int y = (int) (obs.position.y / blockSize);
+            if (x == 0 || y == 0 || x == width - 1 || y == height - 1)
+                types.add(obs.itype);
+        }
+        return types;
+    }
+
+    // The getXPositions() methods give one list per sprite type, or null if there are none
+    static ArrayList<Observation> flatten (ArrayList<Observation>[] positions) {
+        ArrayList<Observation> all = new ArrayList<Observation>();
+        if (positions != null)
+            for (ArrayList<Observation> ofType : positions)
+                all.addAll(ofType);
+        return all;
+    }
+}
@@ -0,0 +1,114 @@
+// Code written by Wells Lucas Santo
+package controllers.GeneralTreeSearch;
+
+import tools.ElapsedCpuTimer;
+
+// Early Stop: decides whether the search can give its answer before the budget runs out,
+// because more iterations are not going to change it. Checked after every iteration,
+// once every child of the root is in the tree. Two rules, each optional:
+//
+// - Stable decision: the child the Selection rule picks has been the same for the last
+//   N iterations. Only the iterations that backed up a reward into the root's children
+//   count (going by their visit counts), so a search whose playouts all run out of
+//   time doesn't stop on a decision nothing has tested.
+// - Confidence: the lower confidence bound of the best child is above the upper bound
+//   of every other child (bounds are value -/+ c * sqrt(ln(visits of all children) /
+//   visits of the child), with the same exploration term as the UCT value).
+//
+// It also keeps count of how much of the budget was left when it stopped, so the
+// time saved over a whole tournament can be measured.
+//
+// Each worker has its own, since each runs on its own thread.
+public class GTSEarlyStop {
+
+    int stableIterations;
+    double confidence;
+
+    // The decision after the last check, for how many backed-up iterations it's been the
+    // same, and the visits of the root's children at the last check
+    int decision = -1;
+    int unchanged;
+    int lastVisits;
+
+    // Totals over every eval() so far
+    int searches;
+    int stops;
+    double savedMillis;
+    long savedIterations;
+
+    public GTSEarlyStop (int stableIterations, double confidence) {
+        this.stableIterations = stableIterations;
+        this.confidence = confidence;
+    }
+
+    // A new search starts
+    public void reset () {
+        decision = -1;
+        unchanged = 0;
+        lastVisits = 0;
+        searches++;
+    }
+
+    // Whether the search at 'root' can stop now
+    public boolean check (GTSAlgo algo, GTSNode root) {
+        for (int i = 0; i < root.numChildren(); i++)
+            if (root.getChild(i) == null)
+                return false;
+        if (root.numChildren() < 2)
+            return true;
+
+        if (stableIterations > 0) {
+            int current = algo.selectionRule.select(root);
+            // A batch of Level Workers counts as as many iterations as it backed up
+            // (and pruning by the Memory Budget as none)
+            int visits = 0;
+            for (int i = 0; i < root.numChildren(); i++)
+                visits += root.getChild(i).getVisitCount();
+            unchanged = current == decision ? unchanged + Math.max(visits - lastVisits, 0) : 0;
+            decision = current;
+            lastVisits = visits;
+            if (unchanged >= stableIterations)
+                return true;
+        }
+        return confidence > 0 && separated(algo, root);
+    }
+
+    // Confidence: whether the best child's interval lies above all the others
+    boolean separated (GTSAlgo algo, GTSNode root) {
+        int totalVisits = 0;
+        for (int i = 0; i < root.numChildren(); i++) {
+            if (root.getChild(i).getVisitCount() == 0)
+                return false;
+            totalVisits += root.getChild(i).getVisitCount();
+        }
+
+        int best = 0;
+        for (int i = 1; i < root.numChildren(); i++)
+            if (algo.valueOf(root.getChild(i)) > algo.valueOf(root.getChild(best)))
+                best = i;
+        double lower = algo.valueOf(root.getChild(best)) - width(root.getChild(best), totalVisits);
+        for (int i = 0; i < root.numChildren(); i++)
+            if (i != best && algo.valueOf(root.getChild(i)) + width(root.getChild(i), totalVisits) >= lower)
+                return false;
+        return true;
+    }
+
+    double width (GTSNode child, int totalVisits) {
+        return confidence * Math.sqrt(Math.log(totalVisits) / child.getVisitCount());
+    }
+
+    // The search stopped early with this much of the budget left
+    public void stopped (GTSBudget budget, ElapsedCpuTimer elapsedTimer) {
+        stops++;
+        if (budget.isFixed())
+            savedIterations += Math.max(budget.iterationsLeft() == Integer.MAX_VALUE ? 0 : budget.iterationsLeft(), 0);
+        else
+            savedMillis += Math.max(elapsedTimer.remainingTimeMillis(), 0);
+    }
+
+    public String statistics (GTSBudget budget) {
+        return "Early stop after " + budget.iterations() + " iterations (" + stops + " of " + searches
+               + " searches stopped early, saved " + savedMillis + " ms"
+               + (savedIterations > 0 ? ", " + savedIterations + " iterations" : "") + ")";
+    }
+}
@@ -0,0 +1,152 @@
+// Code written by Wells Lucas Santo
+package controllers.GeneralTreeSearch;
+
+import controllers.Heuristics.StateHeuristic;
+import core.game.StateObservation;
+import ontology.Types;
+
+import java.lang.reflect.Constructor;
+
+// Evaluation: the reward of a (simulated) state (see GTSComponent)
+// Evaluators can be called from several threads at once, and must not change the state.
+public abstract class GTSEvaluator extends GTSComponent {
+
+    public abstract double evaluate (StateObservation state);
+
+    // Called with the state of the game at the start of every eval(), on the calling
+    // thread before any worker starts, so whatever it sets up stays read-only during
+    // the search
+    public void startSearch (StateObservation root) {
+    }
+
+    // Whether every node the search explores is evaluated, rather than only those at the
+    // Depth Limit or the end of the game (see GTSAlgo.playout())
+    public boolean evaluatesEveryNode () {
+        return false;
+    }
+
+    // Whether the first reward backed up into a node replaces the 0 it starts with under
+    // HIGH or LOW backprop, rather than being compared with it (see GTSBackpropRule). For
+    // evaluators whose values don't compare with 0, like the costs of DISTANCE.
+    public boolean replacesInitialReward () {
+        return false;
+    }
+
+    // The built-in evaluator for a TSDL Evaluation value
+    static GTSEvaluator create (GTSParams.EVALUATION evaluation) {
+        if (evaluation == GTSParams.EVALUATION.WIN)
+            return new Win();
+        if (evaluation == GTSParams.EVALUATION.WINLOSSPOINTS)
+            return new WinLossPoints();
+        if (evaluation == GTSParams.EVALUATION.HEURISTIC)
+            return new Heuristic();
+        if (evaluation == GTSParams.EVALUATION.DISTANCE)
+            return new Distance();
+        // Default: Points
+        return new Points();
+    }
+
+    // Points: Reward is just the score
+    static class Points extends GTSEvaluator {
+        public double evaluate (StateObservation state) {
+            return state.getGameScore();
+        }
+    }
+
+    // Win: Add 1 to the reward if this node is a winning state
+    static class Win extends GTSEvaluator {
+        public double evaluate (StateObservation state) {
+            if (state.isGameOver() && state.getGameWinner() == Types.WINNER.PLAYER_WINS)
+                return 1;
+            return 0;
+        }
+    }
+
+    // WinLossPoints: Winning state is large reward, losing state is negative, and points
+    static class WinLossPoints extends GTSEvaluator {
+        public double evaluate (StateObservation state) {
+            boolean gameOver = state.isGameOver();
+            Types.WINNER outcome = state.getGameWinner();
+            double reward = state.getGameScore();
+            if (gameOver && outcome == Types.WINNER.PLAYER_LOSES)
+                reward += -10000000.0;
+
+            if (gameOver && outcome == Types.WINNER.PLAYER_WINS)
+                reward +=  10000000.0;
+            return reward;
+        }
+    }
+
+    // Heuristic: Reward is the value of a controllers.Heuristics.StateHeuristic, given by
+    // the Heuristic parameter: SimpleStateHeuristic, WinScoreHeuristic, or the fully
+    // qualified name of any other subclass. A new one is made from the state of the game
+    // at each eval(), like the sample controllers do when they act.
+    static class Heuristic extends GTSEvaluator {
+        Constructor<? extends StateHeuristic> constructor;
+        StateHeuristic heuristic;
+
+        public void bind (GTSAlgo algo) {
+            super.bind(algo);
+            String className = GTSComponent.isClassName(algo.heuristic) ? algo.heuristic
+                                                                         : "controllers.Heuristics." + algo.heuristic;
+            try {
+                constructor = Class.forName(className).asSubclass(StateHeuristic.class)
+                                   .getConstructor(StateObservation.class);
+            } catch (ReflectiveOperationException | ClassCastException ex) {
+                throw new IllegalArgumentException("Can't use " + className + " as a StateHeuristic", ex);
+            }
+        }
+
+        public void startSearch (StateObservation root) {
+            try {
+                heuristic = constructor.newInstance(root);
+            } catch (ReflectiveOperationException ex) {
+                throw new IllegalArgumentException("Can't create " + constructor.getDeclaringClass().getName(), ex);
+            }
+        }
+
+        public double evaluate (StateObservation state) {
+            return heuristic.evaluateState(state);
+        }
+    }
+
+    // Distance: A cost to be minimised, as in A* (see Astar.txt, which uses LOW for
+    // Exploration, Backpropagation and Selection): the ticks since the root plus the moves
+    // left to the closest goal (see GTSDistanceField), minus the points scored since the
+    // root, which count more than crossing the whole level. Winning is the lowest cost
+    // there is, losing the highest.
+    // Like A*, every node is evaluated, so that getting somewhere sooner costs less.
+    static class Distance extends GTSEvaluator {
+        GTSDistanceField field = new GTSDistanceField();
+        int rootTick;
+        double rootScore;
+
+        public void startSearch (StateObservation root) {
+            field.update(root);
+            rootTick = root.getGameTick();
+            rootScore = root.getGameScore();
+        }
+
+        public boolean evaluatesEveryNode () {
+            return true;
+        }
+
+        // Costs are all above 0, so LOW backprop would otherwise keep the 0 forever
+        public boolean replacesInitialReward () {
+            return true;
+        }
+
+        public double evaluate (StateObservation state) {
+            // A win sooner is better than a win later, and a loss later better than sooner
+            if (state.isGameOver() && state.getGameWinner() == Types.WINNER.PLAYER_WINS)
+                return -10000000.0 + (state.getGameTick() - rootTick);
+            if (state.isGameOver() && state.getGameWinner() == Types.WINNER.PLAYER_LOSES)
+                return 10000000.0 - (state.getGameTick() - rootTick);
+            int distance = field.distance(state);
+            if (distance == GTSDistanceField.UNREACHABLE)
+                distance = field.cells();
+            return (state.getGameTick() - rootTick) + distance
+                   - (state.getGameScore() - rootScore) * field.cells();
+        }
+    }
+}
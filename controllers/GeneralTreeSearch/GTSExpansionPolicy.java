@@ -0,0 +1,118 @@
+// Code written by Wells Lucas Santo
+package controllers.GeneralTreeSearch;
+
+import core.game.StateObservation;
+
+// Expansion: which children of the selected node get added to the tree (see GTSComponent)
+public abstract class GTSExpansionPolicy extends GTSComponent {
+
+    // Expand 'node', whose game state is 'state'. Returns the node to simulate from (the
+    // node itself, or one of its new children) and leaves that node's state in
+    // worker.leafState.
+    public abstract GTSNode expand (GTSWorker worker, GTSNode node, StateObservation state);
+
+    // Tree Workers: the same, on the tree shared by all the workers, where new children
+    // are installed with a CAS (see GTSAlgo.addSharedChild). By default this expands the
+    // first unexplored child.
+    public GTSNode expandShared (GTSWorker worker, GTSNode node, StateObservation state) {
+        for (int i = 0; i < node.numChildren(); i++)
+            if (node.getChildAtomic(i) == null)
+                return algo.addSharedChild(worker, node, i, state);
+        worker.leafState = state;
+        return node;
+    }
+
+    // The built-in policy for a TSDL Expansion value
+    static GTSExpansionPolicy create (GTSParams.EXPANSION expansion) {
+        if (expansion == GTSParams.EXPANSION.FIRST)
+            return new First();
+        if (expansion == GTSParams.EXPANSION.RANDOM)
+            return new Random();
+        return new All();
+    }
+
+    // Simulate from the new child at 'index', unless it turned out to be a transposition
+    // that is already in the tree, in which case we simulate from 'node' instead
+    GTSNode expandChild (GTSWorker worker, GTSNode node, StateObservation state, int index) {
+        StateObservation nextState = algo.nextState(worker, state, index);
+        GTSNode child = algo.addChild(worker, node, index, nextState);
+        if (algo.isOwnChild(node, index, child)) {
+            worker.frontier.add(child);
+            worker.leafState = nextState;
+            return child;
+        }
+        worker.leafState = state;
+        return node;
+    }
+
+    // All: Add all of the children of this node to the frontier
+    // This is the behavior you want in DFS/BFS/A*
+    static class All extends GTSExpansionPolicy {
+        public GTSNode expand (GTSWorker worker, GTSNode node, StateObservation state) {
+            for (int i = 0; i < node.numChildren(); i++) {
+                GTSNode child = algo.addChild(worker, node, i, algo.nextState(worker, state, i));
+                // A transposition is already in the tree (and was in the frontier)
+                if (algo.isOwnChild(node, i, child))
+                    worker.frontier.add(child);
+            }
+            worker.leafState = state;
+            return node;
+        }
+
+        public GTSNode expandShared (GTSWorker worker, GTSNode node, StateObservation state) {
+            for (int i = 0; i < node.numChildren(); i++)
+                if (node.getChildAtomic(i) == null)
+                    algo.addSharedChild(worker, node, i, state);
+            worker.leafState = state;
+            return node;
+        }
+    }
+
+    // First: Add only the first unexplored child to the frontier
+    static class First extends GTSExpansionPolicy {
+        public GTSNode expand (GTSWorker worker, GTSNode node, StateObservation state) {
+            for (int i = 0; i < node.numChildren(); i++)
+                if (node.getChild(i) == null)
+                    return expandChild(worker, node, state, i);
+            worker.leafState = state;
+            return node;
+        }
+    }
+
+    // Random: Add a random child to the frontier
+    // Do the random selection based on how SampleMCTS expand does it: go through the
+    // unexplored children and randomly assign values to each, the one who receives the
+    // highest value (randomly) is the one we expand
+    static class Random extends GTSExpansionPolicy {
+        public GTSNode expand (GTSWorker worker, GTSNode node, StateObservation state) {
+            int index = pick(worker, node, false);
+            if (index != -1)
+                return expandChild(worker, node, state, index);
+            worker.leafState = state;
+            return node;
+        }
+
+        public GTSNode expandShared (GTSWorker worker, GTSNode node, StateObservation state) {
+            int index = pick(worker, node, true);
+            if (index != -1)
+                return algo.addSharedChild(worker, node, index, state);
+            worker.leafState = state;
+            return node;
+        }
+
+        // A random unexplored child, or -1 if there is none
+        int pick (GTSWorker worker, GTSNode node, boolean shared) {
+            int bestAction = -1;
+            double bestValue = -1;
+            for (int i = 0; i < node.numChildren(); i++) {
+                double randomValue = worker.random.nextDouble();
+                GTSNode child = shared ? node.getChildAtomic(i) : node.getChild(i);
+                if (randomValue > bestValue && child == null) {
+                    bestAction = i;
+                    bestValue = randomValue;
+                }
+            }
+            return bestAction;
+        }
+    }
+}
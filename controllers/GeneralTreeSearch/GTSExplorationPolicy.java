@@ -0,0 +1,117 @@
+// Code written by Wells Lucas Santo
+package controllers.GeneralTreeSearch;
+
+// Exploration: which node of the tree gets expanded next (see GTSComponent)
+public abstract class GTSExplorationPolicy extends GTSComponent {
+
+    // The node to expand next in the worker's tree
+    public abstract GTSNode select (GTSWorker worker);
+
+    // A new, empty frontier of the kind this policy selects from (one per worker)
+    public GTSFrontier newFrontier () {
+        return new GTSQueueFrontier(true);
+    }
+
+    // Whether select() picks from the frontier, so that Removal: YES takes the
+    // selected node out of it
+    public boolean usesFrontier () {
+        return true;
+    }
+
+    // The built-in policy for a TSDL Exploration value
+    static GTSExplorationPolicy create (GTSParams.EXPLORATION exploration) {
+        if (exploration == GTSParams.EXPLORATION.UCT)
+            return new Uct();
+        if (exploration == GTSParams.EXPLORATION.BEAM)
+            return new Beam();
+        return new Frontier(exploration);
+    }
+
+    // First: Select the node at the front of the frontier queue (FIFO, for BFS)
+    // Last:  Select the node at the back of the frontier stack (LIFO, for DFS)
+    // High:  Select the node that has the highest reward (top of a max-heap)
+    // Low:   Select the node that has the lowest reward (top of a min-heap)
+    // The frontier implementation was picked from the Exploration parameter,
+    // so each of these is a constant-time peek
+    //*/ Will HIGH actually work? Only if there's independent meaning to nodes
+    //*/ with high reward -- if the branch shares the reward of a leaf, then
+    //*/ this will always just pick the leaf
+    //**// Need to initialize leaves with values!
+    static class Frontier extends GTSExplorationPolicy {
+        GTSParams.EXPLORATION exploration;
+
+        Frontier (GTSParams.EXPLORATION exploration) {
+            this.exploration = exploration;
+        }
+
+        public GTSNode select (GTSWorker worker) {
+            return worker.frontier.peek();
+        }
+
+        public GTSFrontier newFrontier () {
+            return GTSFrontier.create(exploration);
+        }
+    }
+
+    // Beam: Select the best node of the current level (see GTSBeamFrontier). A level is
+    // only expanded once, so the node always leaves the frontier, whatever Removal says
+    static class Beam extends GTSExplorationPolicy {
+        public GTSNode select (GTSWorker worker) {
+            return worker.frontier.poll();
+        }
+
+        public GTSFrontier newFrontier () {
+            return new GTSBeamFrontier(algo.beamWidth, algo.evaluator,
+                                       algo.selection == GTSParams.SELECTION.LOW);
+        }
+
+        public boolean usesFrontier () {
+            return false;
+        }
+    }
+
+    // UCT: Will pick the deepest unexpanded node in the tree based on UCT
+    // (it walks the tree rather than picking from the frontier, so there is nothing to remove)
+    static class Uct extends GTSExplorationPolicy {
+
+        public boolean usesFrontier () {
+            return false;
+        }
+
+        public GTSNode select (GTSWorker worker) {
+            // Start traversal at the root node
+            GTSNode currentNode = worker.frontier.peek();
+
+            // In the situation where all of the children have been explored
+            // Use UCT to go down the tree until we get to a node without all children explored
+            while (currentNode.numChildren() != 0 && hasAllChildren(currentNode)) {
+                // Find the best child to select from
+                // this is the "uct" function in the SampleMCTS SingleTreeNode
+                int bestIndex = 0;
+                double bestValue = -Double.MAX_VALUE;
+                int totalVisits = currentNode.getVisitCount();
+
+                for (int i = 0; i < currentNode.numChildren(); i++) {
+                    GTSNode child = currentNode.getChild(i);
+                    double thisValue = algo.uct(child.getReward(), child.getVisitCount(), totalVisits);
+                    if (thisValue > bestValue) {
+                        bestValue = thisValue;
+                        bestIndex = i;
+                    }
+                }
+
+                // Update currentNode to best child node
+                currentNode = currentNode.getChild(bestIndex);
+            }
+            return currentNode;
+        }
+
+        // If the node still has unexplored children, it is the one we expand
+        boolean hasAllChildren (GTSNode node) {
+            for (int i = 0; i < node.numChildren(); i++)
+                if (node.getChild(i) == null)
+                    return false;
+            return true;
+        }
+    }
+}
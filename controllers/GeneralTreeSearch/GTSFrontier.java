@@ -0,0 +1,74 @@
+// Code written by Wells Lucas Santo
+package controllers.GeneralTreeSearch;
+
+import java.util.HashSet;
+
+// The frontier: the collection of nodes that the Exploration parameter picks from.
+// Each Exploration value is backed by the data structure that suits it, so that
+// selecting and removing a node never needs a linear scan of the whole frontier.
+public abstract class GTSFrontier {
+
+    // Add a node to the frontier
+    abstract void add (GTSNode node);
+
+    // The node that the Exploration parameter would select next (without removing it)
+    abstract GTSNode peek ();
+
+    // Remove and return the node that peek() would return
+    abstract GTSNode poll ();
+
+    // Remove a specific node from the frontier, returns false if it was not in it
+    abstract boolean remove (GTSNode node);
+
+    // Remove every one of 'nodes' that is in the frontier (see Memory Budget)
+    void removeAll (HashSet<GTSNode> nodes) {
+        for (GTSNode node : nodes)
+            if (contains(node))
+                remove(node);
+    }
+
+    // Number of nodes currently in the frontier
+    abstract int size ();
+
+    // Empty the frontier so it can be reused on the next eval()
+    abstract void clear ();
+
+    // Called whenever the reward of a node changes (e.g. during backprop),
+    // so that ordered frontiers can restore their ordering
+    void update (GTSNode node) {
+    }
+
+    // A line about what the frontier did during the search, if it has anything to report
+    String statistics () {
+        return null;
+    }
+
+    boolean isEmpty () {
+        return size() == 0;
+    }
+
+    // Is this node currently waiting in the frontier?
+    static boolean contains (GTSNode node) {
+        return node.frontierIndex != -1;
+    }
+
+    // Pick the frontier implementation that matches the TSDL Exploration parameter
+    static GTSFrontier create (GTSParams.EXPLORATION exploration) {
+        if (exploration == null)
+            return new GTSQueueFrontier(true);
+
+        switch (exploration) {
+            // High/Low: indexed binary heap ordered by reward
+            case HIGH: return new GTSHeapFrontier(true);
+            case LOW:  return new GTSHeapFrontier(false);
+
+            // Last: LIFO stack (for DFS)
+            case LAST: return new GTSQueueFrontier(false);
+
+            // First: FIFO queue (for BFS)
+            // UCT only ever reads the root from the frontier, so a queue is enough
+            case FIRST: case UCT: default:
+                return new GTSQueueFrontier(true);
+        }
+    }
+}
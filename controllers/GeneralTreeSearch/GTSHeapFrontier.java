@@ -0,0 +1,139 @@
+// Code written by Wells Lucas Santo
+package controllers.GeneralTreeSearch;
+
+// Frontier for the HIGH and LOW Exploration values: an indexed binary heap keyed on
+// node reward. Each node remembers its slot in the heap (GTSNode.frontierIndex), so
+// removing an arbitrary node or re-ordering it after its reward changes is O(log n).
+// Ties are broken by insertion order, oldest first, which is what the previous
+// linear scan over the ArrayList did.
+public class GTSHeapFrontier extends GTSFrontier {
+
+    // True: the node with the highest reward is on top, False: the lowest
+    boolean highFirst;
+    GTSNode[] heap;
+    int size;
+    long insertions;
+
+    public GTSHeapFrontier (boolean highFirst) {
+        this.highFirst = highFirst;
+        heap = new GTSNode[1024];
+        size = 0;
+        insertions = 0;
+    }
+
+    void add (GTSNode node) {
+        if (node.frontierIndex != -1)
+            return;
+        if (size == heap.length) {
+            GTSNode[] bigger = new GTSNode[heap.length * 2];
+            System.arraycopy(heap, 0, bigger, 0, size);
+            heap = bigger;
+        }
+        node.frontierOrder = insertions++;
+        heap[size] = node;
+        node.frontierIndex = size;
+        size++;
+        siftUp(node.frontierIndex);
+    }
+
+    GTSNode peek () {
+        return size == 0 ? null : heap[0];
+    }
+
+    GTSNode poll () {
+        if (size == 0)
+            return null;
+        GTSNode top = heap[0];
+        removeAt(0);
+        return top;
+    }
+
+    boolean remove (GTSNode node) {
+        int index = node.frontierIndex;
+        if (index < 0 || index >= size || heap[index] != node)
+            return false;
+        removeAt(index);
+        return true;
+    }
+
+    // Decrease-key / increase-key: move the node to wherever its new reward belongs
+    void update (GTSNode node) {
+        int index = node.frontierIndex;
+        if (index < 0 || index >= size || heap[index] != node)
+            return;
+        if (!siftUp(index))
+            siftDown(index);
+    }
+
+    int size () {
+        return size;
+    }
+
+    void clear () {
+        for (int i = 0; i < size; i++) {
+            heap[i].frontierIndex = -1;
+            heap[i] = null;
+        }
+        size = 0;
+    }
+
+    // Take the node at 'index' out of the heap and fill the hole with the last node
+    void removeAt (int index) {
+        GTSNode removed = heap[index];
+        size--;
+        if (index != size) {
+            heap[index] = heap[size];
+            heap[index].frontierIndex = index;
+            heap[size] = null;
+            if (!siftUp(index))
+                siftDown(index);
+        } else {
+            heap[size] = null;
+        }
+        removed.frontierIndex = -1;
+    }
+
+    // Should node 'a' be explored before node 'b'?
+    boolean before (GTSNode a, GTSNode b) {
+        double ra = a.getReward();
+        double rb = b.getReward();
+        if (ra != rb)
+            return highFirst ? ra > rb : ra < rb;
+        return a.frontierOrder < b.frontierOrder;
+    }
+
+    // Returns true if the node moved
+    boolean siftUp (int index) {
+        GTSNode node = heap[index];
+        int start = index;
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!before(node, heap[parent]))
+                break;
+            heap[index] = heap[parent];
+            heap[index].frontierIndex = index;
+            index = parent;
+        }
+        heap[index] = node;
+        node.frontierIndex = index;
+        return index != start;
+    }
+
+    void siftDown (int index) {
+        GTSNode node = heap[index];
+        int half = size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            int right = child + 1;
+            if (right < size && before(heap[right], heap[child]))
+                child = right;
+            if (!before(heap[child], node))
+                break;
+            heap[index] = heap[child];
+            heap[index].frontierIndex = index;
+            index = child;
+        }
+        heap[index] = node;
+        node.frontierIndex = index;
+    }
+}
@@ -0,0 +1,158 @@
+// Code written by Wells Lucas Santo
+package controllers.GeneralTreeSearch;
+
+import  core.game.StateObservation;
+import  ontology.Types;
+import  tools.ElapsedCpuTimer;
+
+import  java.io.*;
+import  java.util.ArrayList;
+
+// Online hyper-heuristic over several tree searches. It holds one GTSAlgo per TSDL file
+// listed in its own file, and on every act() gives the whole time budget to one of them,
+// chosen by a bandit (discounted UCB1). Over recent ticks, this moves the time towards
+// the searches that work for the game being played.
+//
+// The reward of a search for a tick it played is the score it gained by the next tick,
+// plus a bonus for how many nodes per second it built. Both are scaled by the largest
+// values seen so far, so the reward is about 1 for the best search on each.
+//
+// The file it reads looks like:
+//     Algorithm: TSDLAlgorithms/BFS.txt
+//     Algorithm: TSDLAlgorithms/MCTS.txt
+//     Window: 50
+//     Exploration Weight: 1.4
+//     Throughput Weight: 0.25
+public class GTSHyperHeuristic {
+
+    // The searches to choose from (one per Algorithm line)
+    ArrayList<String> files = new ArrayList<String>();
+    GTSAlgo[] algos;
+
+    // Bandit parameters
+    int window = 50;                  // roughly how many recent ticks the statistics cover
+    double explorationWeight = 1.4;   // the UCB1 exploration constant
+    double throughputWeight = 0.25;   // weight of nodes/second against score gain
+
+    // Discounted number of times each search played, and discounted sum of its rewards
+    double[] plays;
+    double[] rewards;
+
+    // The search that played on the last tick, and what it achieved
+    int last = -1;
+    double lastScore;
+    double lastRate;
+
+    // The largest score change and nodes/second seen so far (for scaling)
+    double maxGain = GTSAlgo.epsilon;
+    double maxRate = GTSAlgo.epsilon;
+
+    public GTSHyperHeuristic (String filename) {
+        initParameters(filename);
+        algos = new GTSAlgo[files.size()];
+        for (int i = 0; i < algos.length; i++)
+            algos[i] = new GTSAlgo(files.get(i));
+        plays = new double[algos.length];
+        rewards = new double[algos.length];
+        printParameters();
+    }
+
+    // Read the list of TSDL files and the bandit parameters
+    //**// Will necessarily crash if invalid parameter is given
+    void initParameters (String filename) {
+        try {
+            BufferedReader reader = new BufferedReader(new FileReader(new File(filename)));
+            String line = null;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    String info [] = line.split(": ");
+                    switch (info[0]) {
+                        case "Algorithm":          files.add(info[1].trim());                        break;
+                        case "Window":             window = Integer.parseInt(info[1]);               break;
+                        case "Exploration Weight": explorationWeight = Double.parseDouble(info[1]);  break;
+                        case "Throughput Weight":  throughputWeight = Double.parseDouble(info[1]);   break;
+                        default: break;
+                    }
+                }
+            }
+            reader.close();
+            if (files.isEmpty())
+                throw new IllegalArgumentException("No Algorithm in " + filename);
+        // Quit the program if the file is invalid or nonexistant
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            System.exit(666);
+        }
+    }
+
+    void printParameters () {
+        System.out.println("--------------------------------");
+        System.out.println("Hyper-heuristic over " + files);
+        System.out.println("Window: " + window + ", Exploration Weight: " + explorationWeight
+                           + ", Throughput Weight: " + throughputWeight);
+        System.out.println("--------------------------------");
+    }
+
+    // Seed every search with the seed of the game (see GTSAlgo.seedFrom())
+    public void seedFrom (int gameSeed) {
+        for (GTSAlgo algo : algos)
+            algo.seedFrom(gameSeed);
+    }
+
+    // Called at each step: credit the search that played last, pick the one to play now
+    public Types.ACTIONS eval (StateObservation stateObs, ElapsedCpuTimer elapsedTimer) {
+        if (last != -1)
+            reward(last, stateObs.getGameScore() - lastScore, lastRate);
+
+        int chosen = choose();
+
+        // The other searches' remembered subtrees are about a tick they didn't play
+        for (int i = 0; i < algos.length; i++)
+            if (i != chosen)
+                algos[i].forgetTree();
+
+        long start = System.nanoTime();
+        Types.ACTIONS action = algos[chosen].eval(stateObs, elapsedTimer);
+        double seconds = Math.max(System.nanoTime() - start, 1) / 1e9;
+
+        last = chosen;
+        lastScore = stateObs.getGameScore();
+        lastRate = algos[chosen].lastNodes() / seconds;
+        return action;
+    }
+
+    // Discount every search's statistics, then add this tick's reward to the one that played
+    void reward (int algo, double gain, double rate) {
+        maxGain = Math.max(maxGain, Math.abs(gain));
+        maxRate = Math.max(maxRate, rate);
+        double discount = 1.0 - 1.0 / Math.max(window, 1);
+        for (int i = 0; i < algos.length; i++) {
+            plays[i] *= discount;
+            rewards[i] *= discount;
+        }
+        plays[algo] += 1;
+        rewards[algo] += gain / maxGain + throughputWeight * rate / maxRate;
+    }
+
+    // Every search plays once first, then UCB1 on the discounted statistics
+    int choose () {
+        double total = 0;
+        for (int i = 0; i < algos.length; i++) {
+            if (plays[i] == 0)
+                return i;
+            total += plays[i];
+        }
+
+        int best = 0;
+        double bestValue = -Double.MAX_VALUE;
+        for (int i = 0; i < algos.length; i++) {
+            double value = rewards[i] / plays[i]
+                           + explorationWeight * Math.sqrt(Math.log(total + 1) / plays[i]);
+            if (value > bestValue) {
+                bestValue = value;
+                best = i;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,188 @@
+// Code written by Wells Lucas Santo
+package controllers.GeneralTreeSearch;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+
+// Memory Budget: a cap on the size of a worker's tree (see GTSAlgo). The search keeps
+// going when the tree reaches it; instead, whole subtrees are cut out of the tree until
+// it is back to PRUNE_TO of the budget, so that pruning happens now and then rather
+// than on every new node. The subtrees cut are the least visited (VISITS) or those with
+// the lowest value for the Selection rule (VALUE). Nodes at depth 1 are never cut, so
+// that every action keeps its statistics.
+//
+// The budget is a number of nodes, or of bytes, which is turned into nodes with a rough
+// estimate of the size of a node and of the state it keeps (like the State Cache does).
+//
+// Each worker has its own, since each runs on its own thread.
+public class GTSMemoryBudget {
+
+    // Rough size of a node: the object, its statistics and its children array (per action)
+    static final long NODE_BYTES   = 96;
+    static final long ACTION_BYTES = 8;
+
+    // Fraction of the budget the tree is pruned down to
+    static final double PRUNE_TO = 0.75;
+
+    int maxNodes;
+    long maxBytes;
+    GTSParams.PRUNE prune;
+
+    // Budget in nodes for the current search, and the estimated size of a node and a state
+    int capacity;
+    long nodeBytes;
+    long stateBytes;
+
+    // Nodes in the tree now, and cut out of it over the current search
+    int nodes;
+    int pruned;
+
+    public GTSMemoryBudget (int maxNodes, long maxBytes, GTSParams.PRUNE prune) {
+        this.maxNodes = maxNodes;
+        this.maxBytes = maxBytes;
+        this.prune = prune;
+    }
+
+    // A new search starts from 'root' (which may be a reused subtree). 'keepsStates' is
+    // whether every node keeps its own state (not with Open Loop or a State Cache)
+    public void reset (GTSNode root, boolean keepsStates) {
+        nodes = countSubtree(root);
+        pruned = 0;
+        nodeBytes = NODE_BYTES + ACTION_BYTES * root.numChildren();
+        stateBytes = GTSStateCache.estimateBytes(root.thisState);
+        if (maxBytes > 0)
+            capacity = (int) Math.max(1, maxBytes / (nodeBytes + (keepsStates ? stateBytes : 0)));
+        else
+            capacity = Math.max(1, maxNodes);
+    }
+
+    // A new node goes into slot 'index' of 'parent'. If the slot already had a node of its
+    // own (an expansion that doesn't look at what is there, like ALL with Removal: NO), that
+    // subtree is no longer part of the tree.
+    public void added (GTSNode parent, int index) {
+        nodes++;
+        if (parent.ownsChild(index))
+            nodes -= countSubtree(parent.getChild(index));
+    }
+
+    public boolean isFull () {
+        return nodes >= capacity;
+    }
+
+    public int nodes () {
+        return nodes;
+    }
+
+    public int pruned () {
+        return pruned;
+    }
+
+    // Estimated heap use of the tree: its nodes, plus 'states' states
+    public long estimatedBytes (int states) {
+        return nodes * nodeBytes + states * stateBytes;
+    }
+
+    // Cut subtrees out of the worker's tree until it is under PRUNE_TO of the budget
+    public void prune (GTSAlgo algo, GTSWorker worker) {
+        // Every node of the tree below depth 1, and the slots that point to a node they
+        // weren't created for (collapsed siblings, transpositions)
+        ArrayList<GTSNode> candidates = new ArrayList<GTSNode>();
+        ArrayList<GTSNode> aliasParents = new ArrayList<GTSNode>();
+        ArrayDeque<GTSNode> open = new ArrayDeque<GTSNode>();
+        open.add(worker.root);
+        while (!open.isEmpty()) {
+            GTSNode node = open.poll();
+            if (node.getDepth() >= 2)
+                candidates.add(node);
+            boolean hasAlias = false;
+            for (int i = 0; i < node.numChildren(); i++) {
+                if (node.ownsChild(i))
+                    open.add(node.getChild(i));
+                else if (node.getChild(i) != null)
+                    hasAlias = true;
+            }
+            if (hasAlias)
+                aliasParents.add(node);
+        }
+
+        // Worst first; on a tie, the deeper one (its subtree is likely smaller)
+        final GTSAlgo search = algo;
+        final boolean byVisits = prune == GTSParams.PRUNE.VISITS;
+        Collections.sort(candidates, new Comparator<GTSNode>() {
+            public int compare (GTSNode a, GTSNode b) {
+                int order = byVisits ? Integer.compare(a.getVisitCount(), b.getVisitCount())
+                                     : Double.compare(search.valueOf(a), search.valueOf(b));
+                return order != 0 ? order : Integer.compare(b.getDepth(), a.getDepth());
+            }
+        });
+
+        HashSet<GTSNode> cut = new HashSet<GTSNode>();
+        int target = (int) (capacity * PRUNE_TO);
+        for (GTSNode node : candidates) {
+            if (nodes <= target)
+                break;
+            if (isAttached(node))
+                cutSubtree(worker, node, cut);
+        }
+
+        worker.frontier.removeAll(cut);
+        for (GTSNode parent : aliasParents)
+            for (int i = 0; i < parent.numChildren(); i++)
+                if (parent.getChild(i) != null && cut.contains(parent.getChild(i)))
+                    parent.setChild(i, null);
+        // Transpositions may point into what was cut
+        if (worker.transpositions != null) {
+            worker.transpositions.clear();
+            worker.transpositions.put(GTSTranspositionTable.hash(worker.root.thisState), worker.root);
+        }
+    }
+
+    // Whether 'node' is still reachable from the root through the slots it was created for
+    static boolean isAttached (GTSNode node) {
+        for (GTSNode parent = node.getParent(); parent != null; node = parent, parent = parent.getParent())
+            if (parent.getChild(node.getActionIndex()) != node)
+                return false;
+        return true;
+    }
+
+    // Unlink 'node' from its parent and drop its whole subtree: the states, the State
+    // Cache entries and (through 'cut') the frontier entries
+    void cutSubtree (GTSWorker worker, GTSNode node, HashSet<GTSNode> cut) {
+        GTSNode parent = node.getParent();
+        for (int i = 0; i < parent.numChildren(); i++)
+            if (parent.getChild(i) == node)
+                parent.setChild(i, null);
+
+        ArrayDeque<GTSNode> open = new ArrayDeque<GTSNode>();
+        open.add(node);
+        while (!open.isEmpty()) {
+            GTSNode next = open.poll();
+            for (int i = 0; i < next.numChildren(); i++)
+                if (next.ownsChild(i))
+                    open.add(next.getChild(i));
+            if (worker.cache != null)
+                worker.cache.remove(next);
+            next.thisState = null;
+            cut.add(next);
+            nodes--;
+            pruned++;
+        }
+    }
+
+    static int countSubtree (GTSNode root) {
+        int count = 0;
+        ArrayDeque<GTSNode> open = new ArrayDeque<GTSNode>();
+        open.add(root);
+        while (!open.isEmpty()) {
+            GTSNode node = open.poll();
+            count++;
+            for (int i = 0; i < node.numChildren(); i++)
+                if (node.ownsChild(i))
+                    open.add(node.getChild(i));
+        }
+        return count;
+    }
+}
@@ -0,0 +1,275 @@
+// Code written by Wells Lucas Santo
+package controllers.GeneralTreeSearch;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongBinaryOperator;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// Metrics: counters of what the search spends its time on, so that how GTS behaves on
+// one game can be compared with another. Read them in-process with snapshot() (see
+// GTSAlgo.metrics()), or over JMX: every agent registers its own as
+// controllers.GeneralTreeSearch:type=GTSMetrics,name=<TSDL file>, taking the name over
+// from the agent of an earlier game with the same file.
+//
+// - Per decision (taken from the workers' budgets once the search is over): iterations,
+//   nodes added to the tree, the size of the frontier left, and the time it took.
+// - Per call, from every thread (Root/Tree Workers, Rollouts, Level Workers, Ponder):
+//   copy() and advance() calls on the game state, the depth reached by each iteration
+//   and the time spent in each of the seven phases of an iteration, one per TSDL
+//   component. Phases run by several threads at once add up their times.
+//
+// The per-call counters are LongAdders, which spread concurrent updates over several
+// cells instead of making the threads contend on a single one. They and the phase
+// timers only run when the TSDL file asks for Metrics; otherwise every call below
+// returns at once, and only the per-decision counters are kept.
+public class GTSMetrics implements GTSMetricsMBean {
+
+    // The phases, in the order of an iteration (and of the TSDL file)
+    static final int EXPLORATION     = 0;
+    static final int REMOVAL         = 1;
+    static final int EXPANSION       = 2;
+    static final int SIMULATION      = 3;
+    static final int EVALUATION      = 4;
+    static final int BACKPROPAGATION = 5;
+    static final int SELECTION       = 6;
+    static final String[] PHASES = { "Exploration", "Removal", "Expansion", "Simulation",
+                                     "Evaluation", "Backpropagation", "Selection" };
+
+    // Deepest depth with a bucket of its own in the histogram
+    static final int MAX_DEPTH = 32;
+
+    static final LongBinaryOperator MAX = new LongBinaryOperator() {
+        public long applyAsLong (long a, long b) {
+            return Math.max(a, b);
+        }
+    };
+
+    // Off unless the TSDL file asks for Metrics (set before the search starts)
+    boolean enabled;
+
+    LongAdder decisions  = new LongAdder();
+    LongAdder iterations = new LongAdder();
+    LongAdder nodes      = new LongAdder();
+    LongAdder searchNanos = new LongAdder();
+    volatile int lastIterations;
+    volatile int frontierSize;
+
+    LongAdder copies   = new LongAdder();
+    LongAdder advances = new LongAdder();
+
+    LongAdder depthTotal   = new LongAdder();
+    LongAdder depthSamples = new LongAdder();
+    LongAccumulator maxDepth = new LongAccumulator(MAX, 0);
+    LongAdder[] depths = new LongAdder[MAX_DEPTH + 1];
+
+    LongAdder[] phaseNanos = new LongAdder[PHASES.length];
+
+    public GTSMetrics () {
+        for (int i = 0; i < depths.length; i++)
+            depths[i] = new LongAdder();
+        for (int i = 0; i < phaseNanos.length; i++)
+            phaseNanos[i] = new LongAdder();
+    }
+
+    // Publish over JMX as 'agent'. An agent of an earlier game (teardown() is final, so it
+    // can't unregister itself) gives the name up, so a tournament doesn't leave one behind
+    // per game. Without a platform MBean server the search just goes on without it.
+    public void register (String agent) {
+        try {
+            ObjectName name = new ObjectName("controllers.GeneralTreeSearch:type=GTSMetrics,name="
+                                             + ObjectName.quote(agent));
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(name))
+                server.unregisterMBean(name);
+            server.registerMBean(this, name);
+        } catch (Exception ex) {
+            System.out.println("Could not publish the GTS metrics over JMX: " + ex);
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+    // Recording
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    // System.nanoTime() to time a phase from, if phases are timed
+    public long now () {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    public void copied () {
+        if (!enabled)
+            return;
+        copies.increment();
+    }
+
+    public void advanced (int count) {
+        if (!enabled)
+            return;
+        advances.add(count);
+    }
+
+    // An iteration reached a node at 'depth'
+    public void reached (int depth) {
+        if (!enabled)
+            return;
+        depthTotal.add(depth);
+        depthSamples.increment();
+        maxDepth.accumulate(depth);
+        depths[Math.min(depth, MAX_DEPTH)].increment();
+    }
+
+    // 'phase' took from 'start' (from now()) until now. Returns now, so that
+    // the next phase can start from it.
+    public long phase (int phase, long start) {
+        if (!enabled)
+            return 0;
+        long now = System.nanoTime();
+        phaseNanos[phase].add(now - start);
+        return now;
+    }
+
+    // A decision was made, by searching with 'workers' for 'nanos' nanoseconds
+    public void decided (GTSWorker[] workers, long nanos) {
+        int decisionIterations = 0;
+        int decisionNodes = 0;
+        for (GTSWorker worker : workers) {
+            decisionIterations += worker.budget.iterations();
+            decisionNodes += worker.budget.nodes();
+        }
+        decisions.increment();
+        iterations.add(decisionIterations);
+        nodes.add(decisionNodes);
+        searchNanos.add(nanos);
+        lastIterations = decisionIterations;
+        frontierSize = workers[0].frontier.size();
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+    // Reading
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    // A copy of every counter, consistent enough for reporting (counters updated while it
+    // is taken may or may not be in it)
+    public Snapshot snapshot () {
+        return new Snapshot(this);
+    }
+
+    public long getDecisions ()               { return decisions.sum(); }
+    public long getIterations ()              { return iterations.sum(); }
+    public double getIterationsPerDecision () { return ratio(iterations.sum(), decisions.sum()); }
+    public int getLastDecisionIterations ()   { return lastIterations; }
+
+    public long getNodes ()                   { return nodes.sum(); }
+    public long getCopies ()                  { return copies.sum(); }
+    public long getAdvances ()                { return advances.sum(); }
+    public double getNodesPerSecond ()        { return perSecond(nodes.sum()); }
+    public double getCopiesPerSecond ()       { return perSecond(copies.sum()); }
+    public double getAdvancesPerSecond ()     { return perSecond(advances.sum()); }
+
+    public int getMaxDepth ()                 { return (int) maxDepth.get(); }
+    public double getMeanDepth ()             { return ratio(depthTotal.sum(), depthSamples.sum()); }
+    public int getFrontierSize ()             { return frontierSize; }
+
+    public long[] getDepthHistogram () {
+        long[] histogram = new long[depths.length];
+        for (int i = 0; i < depths.length; i++)
+            histogram[i] = depths[i].sum();
+        return histogram;
+    }
+
+    public double getSearchMillis ()          { return searchNanos.sum() / 1e6; }
+    public double getExplorationMillis ()     { return phaseMillis(EXPLORATION); }
+    public double getRemovalMillis ()         { return phaseMillis(REMOVAL); }
+    public double getExpansionMillis ()       { return phaseMillis(EXPANSION); }
+    public double getSimulationMillis ()      { return phaseMillis(SIMULATION); }
+    public double getEvaluationMillis ()      { return phaseMillis(EVALUATION); }
+    public double getBackpropagationMillis () { return phaseMillis(BACKPROPAGATION); }
+    public double getSelectionMillis ()       { return phaseMillis(SELECTION); }
+
+    public double phaseMillis (int phase) {
+        return phaseNanos[phase].sum() / 1e6;
+    }
+
+    // Start counting again from zero (e.g. between two games in the same JVM)
+    public void reset () {
+        decisions.reset();
+        iterations.reset();
+        nodes.reset();
+        searchNanos.reset();
+        lastIterations = 0;
+        frontierSize = 0;
+        copies.reset();
+        advances.reset();
+        depthTotal.reset();
+        depthSamples.reset();
+        maxDepth.reset();
+        for (LongAdder depth : depths)
+            depth.reset();
+        for (LongAdder phase : phaseNanos)
+            phase.reset();
+    }
+
+    double perSecond (long count) {
+        return ratio(count, searchNanos.sum()) * 1e9;
+    }
+
+    static double ratio (long count, long total) {
+        return total == 0 ? 0 : (double) count / total;
+    }
+
+    // The counters at one point in time
+    public static class Snapshot {
+
+        public final long decisions;
+        public final long iterations;
+        public final int lastDecisionIterations;
+        public final long nodes;
+        public final long copies;
+        public final long advances;
+        public final double searchMillis;
+        public final int maxDepth;
+        public final double meanDepth;
+        public final long[] depthHistogram;
+        public final int frontierSize;
+        public final double[] phaseMillis;
+
+        Snapshot (GTSMetrics metrics) {
+            decisions = metrics.getDecisions();
+            iterations = metrics.getIterations();
+            lastDecisionIterations = metrics.getLastDecisionIterations();
+            nodes = metrics.getNodes();
+            copies = metrics.getCopies();
+            advances = metrics.getAdvances();
+            searchMillis = metrics.getSearchMillis();
+            maxDepth = metrics.getMaxDepth();
+            meanDepth = metrics.getMeanDepth();
+            depthHistogram = metrics.getDepthHistogram();
+            frontierSize = metrics.getFrontierSize();
+            phaseMillis = new double[PHASES.length];
+            for (int i = 0; i < PHASES.length; i++)
+                phaseMillis[i] = metrics.phaseMillis(i);
+        }
+
+        public double perSecond (long count) {
+            return searchMillis == 0 ? 0 : count / searchMillis * 1000;
+        }
+
+        public String toString () {
+            StringBuilder text = new StringBuilder();
+            text.append(decisions).append(" decisions, ").append(iterations).append(" iterations (")
+                .append(String.format("%.1f", ratio(iterations, decisions))).append(" per decision, last ")
+                .append(lastDecisionIterations).append(")\n");
+            text.append(String.format("%d nodes (%.0f/s), %d copies (%.0f/s), %d advances (%.0f/s)%n",
+                                      nodes, perSecond(nodes), copies, perSecond(copies),
+                                      advances, perSecond(advances)));
+            text.append(String.format("Depth: max %d, mean %.2f; frontier: %d nodes%n", maxDepth, meanDepth, frontierSize));
+            text.append(String.format("Search: %.1f ms;", searchMillis));
+            for (int i = 0; i < PHASES.length; i++)
+                text.append(String.format(" %s %.1f ms%s", PHASES[i], phaseMillis[i], i < PHASES.length - 1 ? "," : ""));
+            return text.toString();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+// Code written by Wells Lucas Santo
+package controllers.GeneralTreeSearch;
+
+// The attributes GTSMetrics publishes over JMX (e.g. in jconsole, under
+// controllers.GeneralTreeSearch:type=GTSMetrics). Totals are since the agent started;
+// rates are per second of search.
+public interface GTSMetricsMBean {
+
+    long getDecisions ();
+    long getIterations ();
+    double getIterationsPerDecision ();
+    int getLastDecisionIterations ();
+
+    long getNodes ();
+    long getCopies ();
+    long getAdvances ();
+    double getNodesPerSecond ();
+    double getCopiesPerSecond ();
+    double getAdvancesPerSecond ();
+
+    int getMaxDepth ();
+    double getMeanDepth ();
+    long[] getDepthHistogram ();
+    int getFrontierSize ();
+
+    double getSearchMillis ();
+    double getExplorationMillis ();
+    double getRemovalMillis ();
+    double getExpansionMillis ();
+    double getSimulationMillis ();
+    double getEvaluationMillis ();
+    double getBackpropagationMillis ();
+    double getSelectionMillis ();
+
+    void reset ();
+}
@@ -8,60 +8,239 @@ import ontology.Types;
 import tools.ElapsedCpuTimer;
 
 import java.util.ArrayList;
+import java.util.ArrayDeque;
 import java.io.*;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 
 // Nodes in the decision tree
 public class GTSNode {
 
     // Based on the parameters needed for the SampleMCTS SingleTreeNode
     public GTSNode (StateObservation s, GTSNode par) {
+        this(s, par, -1, s.getAvailableActions().size());
+    }
+
+    // A node reached from 'par' by the action at 'actionIndex', with room for 'numActions'
+    // children. 's' may be null for Open Loop nodes, which don't keep their state.
+    public GTSNode (StateObservation s, GTSNode par, int actionIndex, int numActions) {
         thisState = s;
         totalValue = 0;
         visitCount = 0;
         parent = par;
-        children = new GTSNode [thisState.getAvailableActions().size()];
+        this.actionIndex = actionIndex;
+        children = new GTSNode [numActions];
         if (par != null)
-            depth = par.depth+1;
+            depth = par.getDepth()+1;
         else
             depth = 0;
     }
 
+    // A view over slot 'index' of a node arena (see GTSNodeArena)
+    GTSNode (GTSNodeArena arena, int index) {
+        this.arena = arena;
+        this.index = index;
+    }
+
     public Types.ACTIONS getAction () {
         return thisState.getAvailableActions().get(0);
     }
 
+    // Nodes are either plain objects (arena == null) or views over a node arena, in
+    // which case the statistics and links below live in the arena's arrays. The rest of
+    // GTS only goes through these methods, so it works the same with either kind.
+
     public int getVisitCount () {
-        return visitCount;
+        return arena == null ? visitCount : arena.visits[index];
     }
 
     public void incrementVisitCount () {
-        visitCount++;
+        if (arena == null) visitCount++;
+        else arena.visits[index]++;
     }
 
     public int getDepth () {
-        return depth;
+        return arena == null ? depth : arena.depth[index];
+    }
+
+    public GTSNode getParent () {
+        return arena == null ? parent : arena.parentOf(index);
+    }
+
+    public int numChildren () {
+        return arena == null ? children.length : arena.numChildren[index];
+    }
+
+    public GTSNode getChild (int i) {
+        return arena == null ? children[i] : arena.child(index, i);
+    }
+
+    public void setChild (int i, GTSNode child) {
+        if (arena == null) children[i] = child;
+        else arena.setChild(index, i, child);
+    }
+
+    // Index of the action that leads from the parent to this node (-1 for the root).
+    // Nodes created without one look themselves up in their parent's children.
+    public int getActionIndex () {
+        if (arena != null)
+            return arena.action[index];
+        if (actionIndex != -1 || parent == null)
+            return actionIndex;
+        for (int i = 0; i < parent.children.length; i++)
+            if (parent.children[i] == this)
+                return i;
+        return -1;
+    }
+
+    // Whether the child at 'i' was created for that slot, rather than being a node shared
+    // with another slot (a transposition, or a collapsed sibling; see GTSAlgo.addChild())
+    public boolean ownsChild (int i) {
+        GTSNode child = getChild(i);
+        return child != null && child.getParent() == this && child.getActionIndex() == i;
     }
 
     public void setRewardMax (double reward) {
-        if (reward > totalValue) totalValue = reward;
+        if (reward > getReward()) setReward(reward);
     }
 
     public void setRewardMin (double reward) {
-        if (reward < totalValue) totalValue = reward;
+        if (reward < getReward()) setReward(reward);
+    }
+
+    // Detach this node from its parent so it can be the root of the next search,
+    // shifting the depth of the whole subtree so that this node is at depth 0
+    // (plain nodes only: an arena is reset wholesale at the start of each search)
+    public void makeRoot () {
+        int shift = depth;
+        parent = null;
+        if (shift == 0)
+            return;
+        ArrayDeque<GTSNode> open = new ArrayDeque<GTSNode>();
+        open.add(this);
+        while (!open.isEmpty()) {
+            GTSNode node = open.poll();
+            node.depth -= shift;
+            for (int i = 0; i < node.children.length; i++)
+                if (node.ownsChild(i))
+                    open.add(node.children[i]);
+        }
     }
 
     public double getReward () {
-        return totalValue;
+        return arena == null ? totalValue : arena.value[index];
+    }
+
+    public void setReward (double reward) {
+        if (arena == null) totalValue = reward;
+        else arena.value[index] = reward;
+    }
+
+    public void incrementVisitCount (int visits) {
+        if (arena == null) visitCount += visits;
+        else arena.visits[index] += visits;
     }
 
     public void incrementReward (double reward) {
-        totalValue += reward;
+        if (arena == null) totalValue += reward;
+        else arena.value[index] += reward;
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Lock-free versions of the statistics updates, for several threads sharing one tree
+    // (see Tree Workers in GTSAlgo). The fields stay plain so the single-threaded search
+    // pays nothing for them; only these methods access them atomically. Plain nodes only.
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    static final VarHandle TOTAL_VALUE;
+    static final VarHandle VISIT_COUNT;
+    static final VarHandle CHILDREN = MethodHandles.arrayElementVarHandle(GTSNode[].class);
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            TOTAL_VALUE = lookup.findVarHandle(GTSNode.class, "totalValue", double.class);
+            VISIT_COUNT = lookup.findVarHandle(GTSNode.class, "visitCount", int.class);
+        } catch (ReflectiveOperationException ex) {
+            throw new ExceptionInInitializerError(ex);
+        }
+    }
+
+    public int getVisitCountAtomic () {
+        return (int) VISIT_COUNT.getVolatile(this);
+    }
+
+    public double getRewardAtomic () {
+        return (double) TOTAL_VALUE.getVolatile(this);
+    }
+
+    public void addVisitCountAtomic (int visits) {
+        VISIT_COUNT.getAndAdd(this, visits);
+    }
+
+    public void incrementRewardAtomic (double reward) {
+        double current;
+        do {
+            current = (double) TOTAL_VALUE.getVolatile(this);
+        } while (!TOTAL_VALUE.weakCompareAndSet(this, current, current + reward));
+    }
+
+    // Tree Workers: keep 'reward' if it is the first one backed up into this node. Visit
+    // counts can't tell that here, as they include the virtual losses, so the node
+    // remembers it; only this first reward takes the lock. Returns whether it was first.
+    public boolean setFirstRewardAtomic (double reward) {
+        if (rewarded)
+            return false;
+        synchronized (this) {
+            if (rewarded)
+                return false;
+            TOTAL_VALUE.setVolatile(this, reward);
+            rewarded = true;
+            return true;
+        }
+    }
+
+    public void setRewardMaxAtomic (double reward) {
+        double current;
+        do {
+            current = (double) TOTAL_VALUE.getVolatile(this);
+            if (reward <= current) return;
+        } while (!TOTAL_VALUE.weakCompareAndSet(this, current, reward));
+    }
+
+    public void setRewardMinAtomic (double reward) {
+        double current;
+        do {
+            current = (double) TOTAL_VALUE.getVolatile(this);
+            if (reward >= current) return;
+        } while (!TOTAL_VALUE.weakCompareAndSet(this, current, reward));
+    }
+
+    public GTSNode getChildAtomic (int index) {
+        return (GTSNode) CHILDREN.getVolatile(children, index);
+    }
+
+    // Install a newly expanded child, unless another thread got there first.
+    // Returns whichever child ends up in the slot.
+    public GTSNode setChildAtomic (int index, GTSNode child) {
+        GTSNode existing = (GTSNode) CHILDREN.compareAndExchange(children, index, (GTSNode) null, child);
+        return existing == null ? child : existing;
     }
 
     public StateObservation thisState;
     double totalValue;
     int visitCount;
+    volatile boolean rewarded;
     GTSNode parent;
     public GTSNode[] children;
     int depth;
+    int actionIndex;
+
+    // Frontier bookkeeping: -1 when the node is not in the frontier, otherwise its
+    // slot in the heap (see GTSHeapFrontier), and insertion order for breaking ties
+    int frontierIndex = -1;
+    long frontierOrder;
+
+    // Set for views over a node arena
+    GTSNodeArena arena;
+    int index;
 }
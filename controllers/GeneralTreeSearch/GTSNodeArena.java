@@ -0,0 +1,120 @@
+// Code written by Wells Lucas Santo
+package controllers.GeneralTreeSearch;
+
+import core.game.StateObservation;
+
+import java.util.Arrays;
+
+// Struct-of-arrays storage for a whole search tree (see Node Arena in GTSAlgo).
+// Instead of every node being its own object with its own children array, the
+// statistics and links of node i live at index i of a few primitive arrays, and the
+// children of node i are the slots childSlots[firstChild[i] .. firstChild[i]+numChildren[i]).
+// The arrays are allocated once per agent (and only grow if a search ever needs more),
+// and reset() empties the arena without freeing them, so building a tree creates no
+// garbage apart from the game states themselves. GTSNode objects are thin views over a slot, and
+// are recycled together with it.
+public class GTSNodeArena {
+
+    public GTSNodeArena (int capacity, int maxActions) {
+        capacity = Math.max(capacity, 16);
+        parent      = new int[capacity];
+        firstChild  = new int[capacity];
+        numChildren = new int[capacity];
+        depth       = new int[capacity];
+        action      = new int[capacity];
+        visits      = new int[capacity];
+        value       = new double[capacity];
+        views       = new GTSNode[capacity];
+        childSlots  = new int[capacity * Math.max(maxActions, 1)];
+        size = 0;
+        usedSlots = 0;
+    }
+
+    int[]     parent;
+    int[]     firstChild;
+    int[]     numChildren;
+    int[]     depth;
+    int[]     action;
+    int[]     visits;
+    double[]  value;
+    GTSNode[] views;
+    int[]     childSlots;
+
+    // Number of nodes / child slots handed out since the last reset()
+    int size;
+    int usedSlots;
+
+    // Forget the whole tree. The views are kept to be reused with their slots, but let go
+    // of their states now, so that a search smaller than the last one doesn't keep the
+    // states of the last one reachable until the arena gets that far again.
+    public void reset () {
+        for (int i = 0; i < size; i++)
+            views[i].thisState = null;
+        size = 0;
+        usedSlots = 0;
+    }
+
+    public int size () {
+        return size;
+    }
+
+    public int capacity () {
+        return parent.length;
+    }
+
+    // Take the next free slot for a node with state 's', reached from 'par' by the
+    // action at index 'actionIndex' (-1 for the root),
+    // with room for 'n' children. 's' may be null for Open Loop nodes.
+    public GTSNode allocate (StateObservation s, GTSNode par, int actionIndex, int n) {
+        if (size == parent.length)
+            growNodes();
+        while (usedSlots + n > childSlots.length)
+            childSlots = Arrays.copyOf(childSlots, childSlots.length * 2);
+
+        int index = size++;
+        parent[index]      = par == null ? -1 : par.index;
+        depth[index]       = par == null ? 0 : depth[par.index] + 1;
+        action[index]      = actionIndex;
+        visits[index]      = 0;
+        value[index]       = 0;
+        numChildren[index] = n;
+        firstChild[index]  = usedSlots;
+        Arrays.fill(childSlots, usedSlots, usedSlots + n, -1);
+        usedSlots += n;
+
+        GTSNode view = views[index];
+        if (view == null) {
+            view = new GTSNode(this, index);
+            views[index] = view;
+        }
+        view.thisState = s;
+        view.frontierIndex = -1;
+        return view;
+    }
+
+    GTSNode child (int index, int i) {
+        int child = childSlots[firstChild[index] + i];
+        return child == -1 ? null : views[child];
+    }
+
+    void setChild (int index, int i, GTSNode child) {
+        childSlots[firstChild[index] + i] = child == null ? -1 : child.index;
+    }
+
+    GTSNode parentOf (int index) {
+        int p = parent[index];
+        return p == -1 ? null : views[p];
+    }
+
+    void growNodes () {
+        int capacity = parent.length * 2;
+        parent      = Arrays.copyOf(parent, capacity);
+        firstChild  = Arrays.copyOf(firstChild, capacity);
+        numChildren = Arrays.copyOf(numChildren, capacity);
+        depth       = Arrays.copyOf(depth, capacity);
+        action      = Arrays.copyOf(action, capacity);
+        visits      = Arrays.copyOf(visits, capacity);
+        value       = Arrays.copyOf(value, capacity);
+        views       = Arrays.copyOf(views, capacity);
+    }
+}
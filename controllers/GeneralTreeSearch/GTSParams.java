@@ -2,11 +2,21 @@
 package controllers.GeneralTreeSearch;
 
 public class GTSParams {
-    public static enum EXPLORATION     { FIRST, HIGH, LOW, LAST, UCT };
+    public static enum EXPLORATION     { FIRST, HIGH, LOW, LAST, UCT, BEAM };
     public static enum EXPANSION       { ALL, FIRST, RANDOM };
     public static enum REMOVAL         { YES, NO };
     public static enum SIMULATION      { RANDOM, NONE };
-    public static enum EVALUATION      { POINTS, WIN, WINLOSSPOINTS, DISTANCE };
+    public static enum EVALUATION      { POINTS, WIN, WINLOSSPOINTS, DISTANCE, HEURISTIC };
     public static enum BACKPROPAGATION { HIGH, LOW, INCREMENT };
     public static enum SELECTION       { HIGH, LOW, MOSTVISITS };
+    public static enum REUSE           { YES, NO };
+    public static enum MERGE           { VISITS, VOTE, MAX };
+    public static enum AGGREGATE       { MEAN, MAX };
+    public static enum OPENLOOP        { YES, NO };
+    public static enum EVICTION        { LRU, VISITS };
+    public static enum REPLACE         { DEPTH, ALWAYS };
+    public static enum COLLAPSE        { YES, NO };
+    public static enum PRUNE           { VISITS, VALUE };
+    public static enum PONDER          { YES, NO };
+    public static enum METRICS         { YES, NO };
 }
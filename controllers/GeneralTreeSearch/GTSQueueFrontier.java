@@ -0,0 +1,70 @@
+// Code written by Wells Lucas Santo
+package controllers.GeneralTreeSearch;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Iterator;
+
+// Frontier for the FIRST (FIFO queue) and LAST (LIFO stack) Exploration values
+public class GTSQueueFrontier extends GTSFrontier {
+
+    // True: take nodes from the front (BFS), False: take nodes from the back (DFS)
+    boolean fromFront;
+    ArrayDeque<GTSNode> nodes;
+
+    public GTSQueueFrontier (boolean fromFront) {
+        this.fromFront = fromFront;
+        nodes = new ArrayDeque<GTSNode>();
+    }
+
+    // Queued nodes are marked with frontierIndex 0 so that membership can be checked cheaply
+    void add (GTSNode node) {
+        nodes.addLast(node);
+        node.frontierIndex = 0;
+    }
+
+    GTSNode peek () {
+        return fromFront ? nodes.peekFirst() : nodes.peekLast();
+    }
+
+    GTSNode poll () {
+        GTSNode node = fromFront ? nodes.pollFirst() : nodes.pollLast();
+        if (node != null)
+            node.frontierIndex = -1;
+        return node;
+    }
+
+    // Removing the node at the selected end is O(1), anything else falls back to a scan
+    boolean remove (GTSNode node) {
+        if (node == peek()) {
+            poll();
+            return true;
+        }
+        boolean removed = fromFront ? nodes.removeFirstOccurrence(node) : nodes.removeLastOccurrence(node);
+        if (removed)
+            node.frontierIndex = -1;
+        return removed;
+    }
+
+    // One pass over the queue, rather than a scan per node
+    void removeAll (HashSet<GTSNode> removed) {
+        Iterator<GTSNode> it = nodes.iterator();
+        while (it.hasNext()) {
+            GTSNode node = it.next();
+            if (removed.contains(node)) {
+                it.remove();
+                node.frontierIndex = -1;
+            }
+        }
+    }
+
+    int size () {
+        return nodes.size();
+    }
+
+    void clear () {
+        for (GTSNode node : nodes)
+            node.frontierIndex = -1;
+        nodes.clear();
+    }
+}
@@ -0,0 +1,74 @@
+// Code written by Wells Lucas Santo
+package controllers.GeneralTreeSearch;
+
+// Selection: which child of the root is the action actually taken (see GTSComponent)
+// Biases actions with lower index (in case of tie)
+public abstract class GTSSelectionRule extends GTSComponent {
+
+    // The index of the chosen child of 'root' (children may be null)
+    public abstract int select (GTSNode root);
+
+    // The built-in rule for a TSDL Selection value
+    static GTSSelectionRule create (GTSParams.SELECTION selection) {
+        if (selection == null)
+            return new First();
+        switch (selection) {
+            case HIGH:       return new High();
+            case LOW:        return new Low();
+            case MOSTVISITS: return new MostVisits();
+            default:         return new First();
+        }
+    }
+
+    // High: Select the node with the highest reward
+    static class High extends GTSSelectionRule {
+        public int select (GTSNode root) {
+            int action = 0;
+            double bestReward = -Double.MAX_VALUE;
+            for (int i = 0; i < root.numChildren(); i++) {
+                if (root.getChild(i) != null && bestReward < root.getChild(i).getReward()) {
+                    action = i;
+                    bestReward = root.getChild(i).getReward();
+                }
+            }
+            return action;
+        }
+    }
+
+    // Low: Select the node with the lowest reward
+    static class Low extends GTSSelectionRule {
+        public int select (GTSNode root) {
+            int action = 0;
+            double lowReward = Double.MAX_VALUE;
+            for (int i = 0; i < root.numChildren(); i++) {
+                if (root.getChild(i) != null && lowReward > root.getChild(i).getReward()) {
+                    action = i;
+                    lowReward = root.getChild(i).getReward();
+                }
+            }
+            return action;
+        }
+    }
+
+    // Most Visits: Select the node that's been visited the most
+    static class MostVisits extends GTSSelectionRule {
+        public int select (GTSNode root) {
+            int action = 0;
+            double mostVisits = -1;
+            for (int i = 0; i < root.numChildren(); i++) {
+                if (root.getChild(i) != null && mostVisits < root.getChild(i).getReward()) {
+                    action = i;
+                    mostVisits = root.getChild(i).getReward();
+                }
+            }
+            return action;
+        }
+    }
+
+    // Default: Just select first action
+    static class First extends GTSSelectionRule {
+        public int select (GTSNode root) {
+            return 0;
+        }
+    }
+}
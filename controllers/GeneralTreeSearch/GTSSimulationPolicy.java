@@ -0,0 +1,63 @@
+// Code written by Wells Lucas Santo
+package controllers.GeneralTreeSearch;
+
+import core.game.StateObservation;
+import tools.ElapsedCpuTimer;
+
+import java.util.Random;
+
+// Simulation: how the state of a node is rolled forward before it is evaluated
+// (see GTSComponent)
+public abstract class GTSSimulationPolicy extends GTSComponent {
+
+    // Roll a copy of 'state' (the state at 'node') forward (or not) and return the state
+    // to be evaluated. 'state' itself must not be changed.
+    // Playouts of one worker can run at the same time (see Rollouts), each with its own
+    // 'random'.
+    public abstract StateObservation simulate (GTSBudget budget, Random random, GTSNode node,
+                                               StateObservation state, ElapsedCpuTimer elapsedTimer);
+
+    // The built-in policy for a TSDL Simulation value
+    static GTSSimulationPolicy create (GTSParams.SIMULATION simulation) {
+        if (simulation == GTSParams.SIMULATION.NONE)
+            return new None();
+        return new RandomPlayout();
+    }
+
+    // Random Playout: Advance randomly from 'node' to an end state
+    // Only used by MCTS to bring node to a terminal state
+    // These simulated nodes are *not* added to the frontier
+    // (Rollout Length: stop after that many steps, and leave the rest to the Evaluation)
+    static class RandomPlayout extends GTSSimulationPolicy {
+        public StateObservation simulate (GTSBudget budget, Random random, GTSNode node,
+                                          StateObservation state, ElapsedCpuTimer elapsedTimer) {
+            StateObservation finalState = state.copy();
+            algo.metrics.copied();
+            finalState.setNewSeed(random.nextInt());
+            int finalDepth = node.getDepth();
+            long start = System.nanoTime();
+            int maxDepth = algo.rolloutLength > 0 ? Math.min(algo.depthLimit, node.getDepth() + algo.rolloutLength)
+                                                  : algo.depthLimit;
+            while (finalDepth < maxDepth &&
+                   budget.hasAdvance(elapsedTimer) &&
+                   !finalState.isGameOver()) {
+                int actionNo = random.nextInt(finalState.getAvailableActions().size());
+                finalState.advance(finalState.getAvailableActions().get(actionNo));
+                finalDepth++;
+            }
+            budget.recordAdvances(finalDepth - node.getDepth(), System.nanoTime() - start);
+            algo.metrics.advanced(finalDepth - node.getDepth());
+            // System.out.println("Simulation to depth: " + finalDepth);
+            return finalState;
+        }
+    }
+
+    // None: Evaluate the node's own state
+    static class None extends GTSSimulationPolicy {
+        public StateObservation simulate (GTSBudget budget, Random random, GTSNode node,
+                                          StateObservation state, ElapsedCpuTimer elapsedTimer) {
+            algo.metrics.copied();
+            return state.copy();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+// Code written by Wells Lucas Santo
+package controllers.GeneralTreeSearch;
+
+import core.game.Observation;
+import core.game.StateObservation;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+// Bounded cache of node states (see State Cache in GTSAlgo). Only the nodes admitted
+// here keep their StateObservation; when the cache is over budget it evicts a node by
+// dropping its state, and GTSAlgo.stateOf() rebuilds it later by copying the closest
+// ancestor that still has a state and replaying the actions from there. The root is
+// never evicted, so there is always an ancestor to replay from.
+public class GTSStateCache {
+
+    // How many of the least recently used nodes the VISITS policy looks at
+    static final int VISIT_SAMPLE = 8;
+
+    // Rough size of a game state: a fixed part plus a part per sprite (a sprite copy,
+    // its observation and the map entries pointing to them)
+    static final long STATE_BYTES  = 4096;
+    static final long SPRITE_BYTES = 512;
+
+    // The budget, either in states (maxStates) or in bytes (maxBytes), whichever is set
+    int maxStates;
+    long maxBytes;
+    GTSParams.EVICTION eviction;
+
+    // Cached nodes, least recently used first
+    LinkedHashMap<GTSNode, Boolean> nodes;
+    GTSNode root;
+
+    // Budget in states for the current search (maxBytes divided by the estimated state size)
+    int capacity;
+
+    public GTSStateCache (int maxStates, long maxBytes, GTSParams.EVICTION eviction) {
+        this.maxStates = maxStates;
+        this.maxBytes = maxBytes;
+        this.eviction = eviction;
+        nodes = new LinkedHashMap<GTSNode, Boolean>(256, 0.75f, true);
+    }
+
+    // Start caching for a new search from 'root'
+    public void reset (GTSNode root) {
+        nodes.clear();
+        this.root = root;
+        if (maxBytes > 0)
+            capacity = (int) Math.max(1, maxBytes / estimateBytes(root.thisState));
+        else
+            capacity = Math.max(1, maxStates);
+    }
+
+    public int size () {
+        return nodes.size();
+    }
+
+    public int capacity () {
+        return capacity;
+    }
+
+    // 'node' was just given a state: keep it, making room if needed
+    public void admit (GTSNode node) {
+        if (node == root || node.thisState == null)
+            return;
+        nodes.put(node, Boolean.TRUE);
+        while (nodes.size() > capacity)
+            evict();
+    }
+
+    // 'node' had its state read (keeps it from being the next LRU victim)
+    public void touch (GTSNode node) {
+        if (node != root)
+            nodes.get(node);
+    }
+
+    // Forget a node whose state was dropped for another reason
+    public void remove (GTSNode node) {
+        nodes.remove(node);
+    }
+
+    // LRU: drop the least recently used state
+    // VISITS: of the few least recently used states, drop the one of the least visited node
+    void evict () {
+        Iterator<GTSNode> it = nodes.keySet().iterator();
+        GTSNode victim = it.next();
+        if (eviction == GTSParams.EVICTION.VISITS) {
+            for (int i = 1; i < VISIT_SAMPLE && it.hasNext(); i++) {
+                GTSNode candidate = it.next();
+                if (candidate.getVisitCount() < victim.getVisitCount())
+                    victim = candidate;
+            }
+        }
+        nodes.remove(victim);
+        victim.thisState = null;
+    }
+
+    static long estimateBytes (StateObservation state) {
+        long sprites = 0;
+        ArrayList<Observation>[][] grid = state.getObservationGrid();
+        for (int i = 0; i < grid.length; i++)
+            for (int j = 0; j < grid[i].length; j++)
+                sprites += grid[i][j].size();
+        return STATE_BYTES + sprites * SPRITE_BYTES;
+    }
+}
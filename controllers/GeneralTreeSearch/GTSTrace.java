@@ -0,0 +1,263 @@
+// Code written by Wells Lucas Santo
+package controllers.GeneralTreeSearch;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// Trace: a record of every iteration of the search, written to a binary file for
+// GTSTraceReader to summarise. Off unless the TSDL file names a file, in which case
+// each worker records into a ring of its own (worker.trace, null when off, so the
+// search pays one null check per iteration for it).
+//
+// There is one trace per file in the JVM (see open()). The first agent that names the
+// file truncates it; later ones (the next game, or the other searches of a MetaAgent)
+// write into the same file with worker numbers of their own, through the same drain
+// thread. A ring nothing has started a search on for RETIRE_NANOS is let go once it is
+// drained, so the rings of the agents of earlier games don't pile up; if its agent does
+// search again, the ring attaches itself back when the search starts.
+//
+// Recording an iteration never blocks or allocates: an event goes into the next slot
+// of the worker's ring, which is preallocated, and a background thread drains the
+// rings to the file. If the ring is full the event is dropped, and the number dropped
+// is written to the file instead.
+//
+// File format (big-endian, as DataOutputStream writes it):
+// - Header: MAGIC, VERSION (ints)
+// - One record per event, RECORD_BYTES each: worker, search, iteration, depth,
+//   expanded, rollout (ints), reward (double, NaN if not evaluated). A record with
+//   search == DROPPED says that 'iteration' events of that worker were dropped.
+public class GTSTrace {
+
+    static final int MAGIC   = 0x47545354;  // "GTST"
+    static final int VERSION = 1;
+    static final int RECORD_BYTES = 6 * 4 + 8;
+    static final int DROPPED = -1;
+
+    // Events per ring (a power of two), and how long the drain thread waits when the
+    // rings are empty
+    static final int  RING_EVENTS = 1 << 14;
+    static final long DRAIN_NANOS = 5000000;
+
+    // How long after its last search a drained ring is let go (far longer than a search)
+    static final long RETIRE_NANOS = 10000000000L;
+
+    // The trace of every file, by path
+    static final HashMap<String, GTSTrace> traces = new HashMap<String, GTSTrace>();
+
+    String path;
+    ArrayList<Ring> rings = new ArrayList<Ring>();
+    int workers;
+    DataOutputStream out;
+    Thread drainer;
+    volatile boolean running;
+
+    // The trace writing to 'path', opened by the first agent that names it
+    public static synchronized GTSTrace open (String path) {
+        GTSTrace trace = traces.get(path);
+        if (trace == null || !trace.running) {
+            trace = new GTSTrace(path);
+            traces.put(path, trace);
+        }
+        return trace;
+    }
+
+    GTSTrace (String path) {
+        this.path = path;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path), 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+        } catch (IOException ex) {
+            throw new RuntimeException("Cannot write the trace file " + path, ex);
+        }
+
+        running = true;
+        drainer = new Thread(new Runnable() {
+            public void run () {
+                while (running) {
+                    if (drain() == 0)
+                        LockSupport.parkNanos(DRAIN_NANOS);
+                }
+            }
+        }, "GTS-trace");
+        // Daemon, so it never keeps the JVM alive after the game; the hook writes out
+        // what's left when it exits (teardown() is final, so the agent is never told)
+        drainer.setDaemon(true);
+        drainer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            public void run () {
+                close();
+            }
+        }, "GTS-trace-close"));
+    }
+
+    // A ring for a new worker, numbered after all those of the file so far
+    public synchronized Ring newRing () {
+        Ring ring = new Ring(this, workers++);
+        ring.lastSearch = System.nanoTime();
+        attach(ring);
+        return ring;
+    }
+
+    // Drain 'ring' again (it was let go, but its agent searches after all)
+    synchronized void attach (Ring ring) {
+        if (!rings.contains(ring))
+            rings.add(ring);
+        ring.attached = true;
+    }
+
+    // Write out every event recorded so far, and let go of the rings that are done.
+    // Returns how many events there were.
+    synchronized int drain () {
+        int events = 0;
+        long now = System.nanoTime();
+        try {
+            for (Iterator<Ring> it = rings.iterator(); it.hasNext(); ) {
+                Ring ring = it.next();
+                events += ring.drainTo(out);
+                if (now - ring.lastSearch < RETIRE_NANOS)
+                    continue;
+                // Detach first, then look again: a search starting meanwhile either is
+                // seen here or sees the ring detached and attaches it back
+                ring.attached = false;
+                if (now - ring.lastSearch >= RETIRE_NANOS && ring.isDrained())
+                    it.remove();
+                else
+                    ring.attached = true;
+            }
+            if (events > 0)
+                out.flush();
+        } catch (IOException ex) {
+            // The search goes on without a trace
+            System.out.println("Trace file " + path + " failed, tracing stopped: " + ex.getMessage());
+            running = false;
+        }
+        return events;
+    }
+
+    // Stop the drain thread and write out what's left
+    public void close () {
+        if (!running)
+            return;
+        running = false;
+        LockSupport.unpark(drainer);
+        try {
+            drainer.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        drain();
+        try {
+            out.close();
+        } catch (IOException ex) {
+            System.out.println("Trace file " + path + " failed: " + ex.getMessage());
+        }
+    }
+
+    // The events of one worker. Only that worker's thread records into it and only the
+    // drain thread reads from it, so the two counters are all the synchronization needed.
+    public static class Ring {
+
+        int worker;
+        int mask = RING_EVENTS - 1;
+        int[] search    = new int[RING_EVENTS];
+        int[] iteration = new int[RING_EVENTS];
+        int[] depth     = new int[RING_EVENTS];
+        int[] expanded  = new int[RING_EVENTS];
+        int[] rollout   = new int[RING_EVENTS];
+        double[] reward = new double[RING_EVENTS];
+
+        // Events recorded and events written out, ever
+        AtomicLong recorded = new AtomicLong();
+        AtomicLong written  = new AtomicLong();
+
+        // Only touched by the recording thread
+        int searches;
+        int iterations;
+
+        // When the last search started (System.nanoTime()), and whether the trace drains
+        // this ring (see GTSTrace.drain())
+        GTSTrace trace;
+        volatile long lastSearch;
+        volatile boolean attached;
+
+        // Events dropped ever (only written by the recording thread), and how many of
+        // those the file already says were dropped (only touched by the drain thread)
+        volatile int dropped;
+        int reported;
+
+        Ring (GTSTrace trace, int worker) {
+            this.trace = trace;
+            this.worker = worker;
+        }
+
+        // A new search (or a ponder) starts on this worker
+        public void startSearch () {
+            searches++;
+            iterations = 0;
+            lastSearch = System.nanoTime();
+            if (!attached)
+                trace.attach(this);
+        }
+
+        // Whether every event recorded, and every drop, is in the file
+        boolean isDrained () {
+            return written.get() == recorded.get() && dropped == reported;
+        }
+
+        // One iteration: the depth of the node selected, the number of nodes it added to
+        // the tree, the advance() calls of its playouts and the reward it backed up
+        public void record (int selectedDepth, int expandedNodes, int rolloutSteps, double value) {
+            long slot = recorded.get();
+            if (slot - written.get() > mask) {
+                dropped++;
+                iterations++;
+                return;
+            }
+            int i = (int) slot & mask;
+            search[i]    = searches;
+            iteration[i] = iterations++;
+            depth[i]     = selectedDepth;
+            expanded[i]  = expandedNodes;
+            rollout[i]   = rolloutSteps;
+            reward[i]    = value;
+            // Publish the slot only once it's filled in
+            recorded.lazySet(slot + 1);
+        }
+
+        int drainTo (DataOutputStream out) throws IOException {
+            long first = written.get();
+            long last = recorded.get();
+            for (long slot = first; slot < last; slot++) {
+                int i = (int) slot & mask;
+                out.writeInt(worker);
+                out.writeInt(search[i]);
+                out.writeInt(iteration[i]);
+                out.writeInt(depth[i]);
+                out.writeInt(expanded[i]);
+                out.writeInt(rollout[i]);
+                out.writeDouble(reward[i]);
+            }
+            written.lazySet(last);
+            int lost = dropped - reported;
+            if (lost > 0) {
+                reported += lost;
+                out.writeInt(worker);
+                out.writeInt(DROPPED);
+                out.writeInt(lost);
+                out.writeInt(0);
+                out.writeInt(0);
+                out.writeInt(0);
+                out.writeDouble(Double.NaN);
+            }
+            return (int) (last - first);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+// Code written by Wells Lucas Santo
+package controllers.GeneralTreeSearch;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.HashSet;
+
+// Summarise a trace written by GTSTrace:
+//
+//     java controllers.GeneralTreeSearch.GTSTraceReader <trace file>
+//
+// Prints how many searches and iterations it holds, and for the iterations the
+// distribution of the depth selected, the nodes expanded, the length of the playouts
+// and the rewards.
+public class GTSTraceReader {
+
+    // Deepest depth with a line of its own in the histogram
+    static final int MAX_DEPTH = 64;
+
+    long iterations;
+    long dropped;
+    HashSet<Long> searches = new HashSet<Long>();
+    HashSet<Integer> workers = new HashSet<Integer>();
+
+    long[] depths = new long[MAX_DEPTH + 1];
+    long depthTotal;
+    int maxDepth;
+    long expandedTotal;
+    int maxExpanded;
+    long rolloutTotal;
+    int maxRollout;
+
+    long evaluated;
+    double rewardTotal;
+    double minReward = Double.MAX_VALUE;
+    double maxReward = -Double.MAX_VALUE;
+
+    public static void main (String[] args) throws IOException {
+        if (args.length != 1) {
+            System.out.println("Usage: java controllers.GeneralTreeSearch.GTSTraceReader <trace file>");
+            System.exit(1);
+        }
+        GTSTraceReader reader = new GTSTraceReader();
+        reader.read(args[0]);
+        reader.print(args[0]);
+    }
+
+    void read (String path) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(path), 1 << 16));
+        try {
+            if (in.readInt() != GTSTrace.MAGIC)
+                throw new IOException(path + " is not a GTS trace");
+            int version = in.readInt();
+            if (version != GTSTrace.VERSION)
+                throw new IOException(path + " is a version " + version + " trace, expected " + GTSTrace.VERSION);
+            while (true) {
+                int worker;
+                try {
+                    worker = in.readInt();
+                } catch (EOFException ex) {
+                    break;
+                }
+                int search = in.readInt();
+                int iteration = in.readInt();
+                int depth = in.readInt();
+                int expanded = in.readInt();
+                int rollout = in.readInt();
+                double reward = in.readDouble();
+                if (search == GTSTrace.DROPPED)
+                    dropped += iteration;
+                else
+                    add(worker, search, depth, expanded, rollout, reward);
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    void add (int worker, int search, int depth, int expanded, int rollout, double reward) {
+        iterations++;
+        workers.add(worker);
+        searches.add(((long) worker << 32) | search);
+
+        depths[Math.min(depth, MAX_DEPTH)]++;
+        depthTotal += depth;
+        maxDepth = Math.max(maxDepth, depth);
+        expandedTotal += expanded;
+        maxExpanded = Math.max(maxExpanded, expanded);
+        rolloutTotal += rollout;
+        maxRollout = Math.max(maxRollout, rollout);
+
+        if (!Double.isNaN(reward)) {
+            evaluated++;
+            rewardTotal += reward;
+            minReward = Math.min(minReward, reward);
+            maxReward = Math.max(maxReward, reward);
+        }
+    }
+
+    void print (String path) {
+        System.out.println("Trace " + path + ": " + iterations + " iterations, " + searches.size()
+                           + " searches, " + workers.size() + " workers"
+                           + (dropped > 0 ? " (" + dropped + " iterations dropped)" : ""));
+        if (iterations == 0)
+            return;
+        System.out.println("Iterations per search : " + mean(iterations, searches.size()));
+        System.out.println("Selected depth        : mean " + mean(depthTotal, iterations) + ", max " + maxDepth);
+        System.out.println("Nodes expanded        : mean " + mean(expandedTotal, iterations) + ", max " + maxExpanded
+                           + ", total " + expandedTotal);
+        System.out.println("Rollout length        : mean " + mean(rolloutTotal, iterations) + ", max " + maxRollout);
+        if (evaluated > 0)
+            System.out.println("Reward                : mean " + rewardTotal / evaluated + ", min " + minReward
+                               + ", max " + maxReward + " (" + evaluated + " evaluated)");
+        else
+            System.out.println("Reward                : no iteration was evaluated");
+        System.out.println("Depth histogram:");
+        for (int depth = 0; depth <= Math.min(maxDepth, MAX_DEPTH); depth++)
+            if (depths[depth] > 0)
+                System.out.println(String.format("  %3d%s %8d  %5.1f%%", depth, depth == MAX_DEPTH ? "+" : " ",
+                                                 depths[depth], 100.0 * depths[depth] / iterations));
+    }
+
+    static String mean (long total, long count) {
+        return String.format("%.2f", (double) total / count);
+    }
+}
@@ -0,0 +1,114 @@
+// Code written by Wells Lucas Santo
+package controllers.GeneralTreeSearch;
+
+import core.game.Observation;
+import core.game.StateObservation;
+import tools.Vector2d;
+
+import java.util.ArrayList;
+import java.util.Map;
+
+// Transposition table (see Transposition Table in GTSAlgo): maps the hash of a game state
+// to the node that was created for it, so that a state reached again through another
+// action order (e.g. NIL and a move blocked by a wall) is merged into the existing node
+// instead of being expanded a second time (once GTSAlgo.addChild() has checked that the
+// states really are the same).
+//
+// It is a fixed-size, direct-mapped table: each hash has one slot, and when two states
+// want the same slot the replacement policy decides which one stays. Entries are stamped
+// with the search they belong to, so clearing the table between searches is free.
+public class GTSTranspositionTable {
+
+    long[] keys;
+    GTSNode[] nodes;
+    int[] depths;
+    int[] stamps;
+    int mask;
+    int stamp = 1;
+    GTSParams.REPLACE replace;
+
+    // How many states were merged into a node already in the tree in the current search
+    int hits;
+
+    public GTSTranspositionTable (int size, GTSParams.REPLACE replace) {
+        // Round the size up to a power of two, so a slot is just the low bits of the hash
+        int capacity = Integer.highestOneBit(Math.max(1, size - 1)) << 1;
+        keys = new long[capacity];
+        nodes = new GTSNode[capacity];
+        depths = new int[capacity];
+        stamps = new int[capacity];
+        mask = capacity - 1;
+        this.replace = replace;
+    }
+
+    // Forget every entry (they just become stale)
+    public void clear () {
+        stamp++;
+        hits = 0;
+    }
+
+    public int hits () {
+        return hits;
+    }
+
+    // The caller merged a state into the node get() returned
+    public void hit () {
+        hits++;
+    }
+
+    // The node stored for this hash, or null. Hashes can collide, so it is only a
+    // candidate: the caller compares its state before merging into it.
+    public GTSNode get (long hash) {
+        int slot = (int) hash & mask;
+        if (stamps[slot] == stamp && keys[slot] == hash)
+            return nodes[slot];
+        return null;
+    }
+
+    // Store a node for this hash, if the replacement policy lets it take the slot
+    // DEPTH:  an occupied slot only goes to a node at the same depth or closer to the root
+    // ALWAYS: the newest node always takes the slot
+    public void put (long hash, GTSNode node) {
+        int slot = (int) hash & mask;
+        int depth = node.getDepth();
+        if (stamps[slot] == stamp && replace == GTSParams.REPLACE.DEPTH && depths[slot] < depth)
+            return;
+        stamps[slot] = stamp;
+        keys[slot] = hash;
+        nodes[slot] = node;
+        depths[slot] = depth;
+    }
+
+    // Zobrist-style hash of a game state. Every sprite (type and position), the avatar's
+    // orientation and resources, the score and the game tick each add their own term, and
+    // terms are summed rather than XORed so two identical sprites on one tile don't cancel
+    // out. Since a term only depends on its own sprite, the hash can be updated one sprite
+    // at a time; the forward model doesn't report which sprites changed, though, so it is
+    // summed again for every new state.
+    public static long hash (StateObservation state) {
+        long hash = 0;
+        ArrayList<Observation>[][] grid = state.getObservationGrid();
+        for (int i = 0; i < grid.length; i++)
+            for (int j = 0; j < grid[i].length; j++)
+                for (Observation obs : grid[i][j])
+                    hash += mix(obs.itype * 0x9E3779B97F4A7C15L
+                                + mix(Double.doubleToLongBits(obs.position.x)) * 31
+                                + Double.doubleToLongBits(obs.position.y));
+
+        Vector2d orientation = state.getAvatarOrientation();
+        hash += mix(0x632BE59BD9B4E019L ^ mix(Double.doubleToLongBits(orientation.x))
+                    ^ Double.doubleToLongBits(orientation.y));
+        for (Map.Entry<Integer, Integer> resource : state.getAvatarResources().entrySet())
+            hash += mix(0x85157AF5L * resource.getKey() + resource.getValue());
+        hash += mix(0x2545F4914F6CDD1DL ^ Double.doubleToLongBits(state.getGameScore()));
+        hash += mix(0x1B873593L + state.getGameTick());
+        return hash;
+    }
+
+    // The SplitMix64 finalizer, so that nearby inputs give unrelated terms
+    static long mix (long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,69 @@
+// Code written by Wells Lucas Santo
+package controllers.GeneralTreeSearch;
+
+import core.game.StateObservation;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+// Everything a single search over one tree needs that can't be shared with other
+// searches running at the same time (see Root Workers and Tree Workers in GTSAlgo)
+public class GTSWorker {
+
+    public GTSWorker (GTSFrontier frontier) {
+        this.frontier = frontier;
+    }
+
+    // Create a node of this worker's tree, in its arena if it has one
+    GTSNode newNode (StateObservation s, GTSNode parent, int actionIndex, int numActions) {
+        if (arena != null)
+            return arena.allocate(s, parent, actionIndex, numActions);
+        return new GTSNode(s, parent, actionIndex, numActions);
+    }
+
+    // The frontier of this worker's tree
+    GTSFrontier frontier;
+
+    // Random numbers for RANDOM expansion and simulation, and the seeds of the copies of
+    // the state (see GTSAlgo.seedWorkers())
+    Random random;
+
+    // Rollouts: one random stream per playout of a leaf-parallel simulation
+    Random[] rolloutRandoms;
+
+    // The root of the tree built on the last eval()
+    GTSNode root;
+
+    // Node Arena: where this worker's tree lives (null for plain GTSNode objects)
+    GTSNodeArena arena;
+
+    // State Cache: which nodes of this worker's tree keep their state (null to keep all)
+    GTSStateCache cache;
+
+    // Transposition Table: the node created for each state hash in this worker's tree (or null)
+    GTSTranspositionTable transpositions;
+
+    // When to stop searching (see GTSBudget)
+    GTSBudget budget;
+
+    // Early Stop: when to stop searching before the budget runs out (or null)
+    GTSEarlyStop earlyStop;
+
+    // Collapse Children: children merged into a sibling in the current search
+    int collapsed;
+
+    // Trace: where this worker records its iterations (or null)
+    GTSTrace.Ring trace;
+
+    // Memory Budget: the size of this worker's tree, and what to cut when it's too big (or null)
+    GTSMemoryBudget memory;
+
+    // Expansion: the game state of the node the expansion policy returned
+    StateObservation leafState;
+
+    // Tree Workers: the nodes this worker walked through in the current iteration
+    ArrayList<GTSNode> path = new ArrayList<GTSNode>();
+
+    // Tree Reuse: the child of the last root that we expect to be in on the next eval()
+    GTSNode nextRoot;
+}
@@ -0,0 +1,31 @@
+// Code written by Wells Lucas Santo
+
+package controllers.GeneralTreeSearch;
+
+import core.game.StateObservation;
+import core.player.AbstractPlayer;
+import ontology.Types;
+import tools.ElapsedCpuTimer;
+
+// Like Agent, but switches between several TSDL tree searches while it plays
+// (see GTSHyperHeuristic)
+public class MetaAgent extends AbstractPlayer {
+
+    GTSHyperHeuristic meta;
+
+    public MetaAgent (StateObservation so, ElapsedCpuTimer elapsedTimer) {
+        String filename = "TSDLAlgorithms/Meta.txt";
+        meta = new GTSHyperHeuristic(filename);
+    }
+
+    public MetaAgent (StateObservation so, ElapsedCpuTimer elapsedTimer, String filename) {
+        meta = new GTSHyperHeuristic(filename);
+    }
+
+    // Called at each step, will return the action to perform
+    // (the searches are seeded from the game's seed on the first call, as in Agent)
+    public Types.ACTIONS act (StateObservation stateObs, ElapsedCpuTimer elapsedTimer) {
+        meta.seedFrom(getRandomSeed());
+        return meta.eval(stateObs, elapsedTimer);
+    }
+}
@@ -5,6 +5,8 @@ import core.VGDLSprite;
 import ontology.Types;
 import ontology.avatar.MovingAvatar;
 import tools.ElapsedCpuTimer;
+import tools.KeyHandler;
+import tools.KeyInput;
 import tools.Vector2d;
 
 import java.awt.*;
@@ -27,6 +29,13 @@ public class ForwardModel extends Game
      */
     private Random randomObs;
 
+    /**
+     * Key input of this forward model. Each copy has its own, so that copies can be
+     * advanced on several threads at once, and while the real game runs, without
+     * overwriting each other's actions (or those of the real game, in Game.ki).
+     */
+    private KeyHandler modelKi = new KeyInput();
+
     /**
      * Boolean map of sprite types that are NPCs.
      * npcList[spriteType]==true : spriteType is NPC.
@@ -427,6 +436,15 @@ public class ForwardModel extends Game
     }
 
 
+    /**
+     * Returns the key input of this forward model, not the one of the real game.
+     * @return the key handler of this forward model.
+     */
+    public KeyHandler getKeyHandler()
+    {
+        return modelKi;
+    }
+
     /**
      * Returns the sampleRandom generator of this forward model. It is not the same as the
      * sampleRandom number generator of the main game copy.
@@ -458,10 +476,10 @@ public class ForwardModel extends Game
      */
     protected void tick(Types.ACTIONS action)
     {
-        this.ki.reset();
-        this.ki.setAction(action);
+        this.modelKi.reset();
+        this.modelKi.setAction(action);
         avatar.preMovement();
-        avatar.move(this, this.ki.getMask());
+        avatar.move(this, this.modelKi.getMask());
 
         for(int i = spriteOrder.length-1; i >= 0; --i)
         {
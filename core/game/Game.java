@@ -154,6 +154,17 @@ public abstract class Game
     public static KeyHandler ki =
             CompetitionParameters.KEY_HANDLER == CompetitionParameters.KEY_INPUT ? new KeyInput() : new KeyPulse();
 
+    /**
+     * Gets the key input the avatar of this game reads its actions from. It is the
+     * (static) input of the real game, unless this is a forward model, which has one
+     * of its own (see ForwardModel.getKeyHandler()).
+     * @return the key handler of this game.
+     */
+    public KeyHandler getKeyHandler()
+    {
+        return ki;
+    }
+
     /**
      * Size of the block in pixels.
      */
@@ -40,6 +40,11 @@ public abstract class AbstractPlayer {
      */
     private Types.ACTIONS lasAction = null;
 
+    /**
+     * Seed of the game being played, as given to setup() (-1 if none).
+     */
+    private int randomSeed = -1;
+
 
     /**
      * Picks an action. This function is called every game step to request an
@@ -60,6 +65,7 @@ public abstract class AbstractPlayer {
      */
     final public void setup(String actionFile, int randomSeed) {
         this.actionFile = actionFile;
+        this.randomSeed = randomSeed;
 
         try {
             if(this.actionFile!=null && SHOULD_LOG)
@@ -111,6 +117,16 @@ public abstract class AbstractPlayer {
         return lasAction;
     }
 
+    /**
+     * Gets the seed of the game being played, so that controllers can seed their
+     * own random numbers from it. Only known after the constructor has returned.
+     * @return the seed given to setup(), or -1 if none.
+     */
+    public int getRandomSeed()
+    {
+        return randomSeed;
+    }
+
     /**
      * Gets the player the control to draw something on the screen.
      * It can be used for debug purposes.
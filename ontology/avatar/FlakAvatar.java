@@ -96,7 +96,7 @@ public class FlakAvatar extends HorizontalAvatar
 
     public void updateUse(Game game)
     {
-        if(Utils.processUseKey(game.ki.getMask()) && hasAmmo())
+        if(Utils.processUseKey(game.getKeyHandler().getMask()) && hasAmmo())
         {
             VGDLSprite added = game.addSprite(itype, new Vector2d(this.rect.x, this.rect.y));
             if(added != null){ //singleton sprites could not add anything here.
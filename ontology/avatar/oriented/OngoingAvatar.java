@@ -51,7 +51,7 @@ public class OngoingAvatar extends OrientedAvatar
         requestPlayerInput(game);
 
         //Map from the action mask to a Vector2D action.
-        Vector2d action2D = Utils.processMovementActionKeys(game.ki.getMask());
+        Vector2d action2D = Utils.processMovementActionKeys(game.getKeyHandler().getMask());
 
         //Update the orientation for this cycle's movement,
         // but only if there was a direction indicated.
@@ -77,7 +77,7 @@ public class ShootAvatar extends OrientedAvatar
 
     public void updateUse(Game game)
     {
-        if(Utils.processUseKey(game.ki.getMask()) && hasAmmo())
+        if(Utils.processUseKey(game.getKeyHandler().getMask()) && hasAmmo())
         {
             shoot(game);
         }